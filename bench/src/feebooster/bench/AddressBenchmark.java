@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster.bench;
+
+import feebooster.TxOutput;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AddressBenchmark {
+
+    @Param({"p2pkh", "p2sh", "p2pk_compressed", "p2pk_uncompressed"})
+    public String scriptType;
+
+    private byte[] script;
+
+    @Setup
+    public void setup()
+    {
+        Random rand = new Random(42);
+        if(scriptType.equals("p2pkh"))
+            script = BenchFixtures.p2pkhScript(BenchFixtures.randomBytes(rand, 20));
+        else if(scriptType.equals("p2sh"))
+            script = BenchFixtures.p2shScript(BenchFixtures.randomBytes(rand, 20));
+        else if(scriptType.equals("p2pk_compressed"))
+            script = BenchFixtures.p2pkScript(BenchFixtures.compressedPubKey(rand));
+        else
+            script = BenchFixtures.p2pkScript(BenchFixtures.uncompressedPubKey(rand));
+    }
+
+    // A fresh output each time so the full derivation is measured
+    @Benchmark
+    public String getAddress()
+    {
+        return new TxOutput(100000, script).getAddress();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster.bench;
+
+import feebooster.Utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Base58Benchmark {
+
+    @Param({"p2pkh", "p2sh"})
+    public String addressType;
+
+    private byte version;
+    private byte[] hash160;
+    private String address;
+
+    @Setup
+    public void setup()
+    {
+        hash160 = BenchFixtures.randomBytes(new Random(7), 20);
+        version = addressType.equals("p2sh") ? (byte) 0x05 : (byte) 0x00;
+        address = addressType.equals("p2sh") ? BenchFixtures.P2SH_ADDRESS : BenchFixtures.P2PKH_ADDRESS;
+    }
+
+    @Benchmark
+    public String base58Encode()
+    {
+        return Utils.base58Encode(version, hash160);
+    }
+
+    @Benchmark
+    public byte[] base58Decode()
+    {
+        return Utils.base58Decode(address);
+    }
+
+    @Benchmark
+    public boolean validateAddress()
+    {
+        return Utils.validateAddress(address);
+    }
+}
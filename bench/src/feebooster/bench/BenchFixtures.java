@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster.bench;
+
+import feebooster.Transaction;
+import feebooster.TxInput;
+import feebooster.TxOutput;
+import feebooster.Utils;
+
+import java.util.Random;
+
+public class BenchFixtures {
+
+    public static final String P2PKH_ADDRESS = "1BvBMSEYstWetqTFn5Au4m4GFg7xJaNVN2";
+    public static final String P2SH_ADDRESS = "3J98t1WpEZ73CNmQviecrnyiWrnqRhWNLy";
+
+    // Builds a signed looking transaction for a shape of "<inputs>x<outputs>", e.g. "2000x1" for a large
+    // consolidation. Inputs are P2PKH spends and outputs alternate between P2PKH and P2SH.
+    // The seed is fixed so every run measures the same bytes.
+    public static Transaction transaction(String shape)
+    {
+        int x = shape.indexOf('x');
+        int numIns = Integer.parseInt(shape.substring(0, x));
+        int numOuts = Integer.parseInt(shape.substring(x + 1));
+        Random rand = new Random(numIns * 31 + numOuts);
+
+        Transaction tx = new Transaction();
+        for(int i = 0; i < numIns; i++)
+        {
+            tx.addInput(new TxInput(Utils.bytesToHex(randomBytes(rand, 32)), rand.nextInt(4),
+                    p2pkhScriptSig(rand), 0xfffffffd));
+        }
+        for(int i = 0; i < numOuts; i++)
+        {
+            byte[] script = (i % 2 == 0) ? p2pkhScript(randomBytes(rand, 20)) : p2shScript(randomBytes(rand, 20));
+            tx.addOutput(new TxOutput(10000 + rand.nextInt(100000000), script));
+        }
+        return tx;
+    }
+
+    public static String transactionHex(String shape)
+    {
+        return Utils.bytesToHex(Transaction.serialize(transaction(shape), false));
+    }
+
+    public static byte[] p2pkhScript(byte[] hash160)
+    {
+        byte[] script = new byte[25];
+        script[0] = (byte) 0x76;
+        script[1] = (byte) 0xa9;
+        script[2] = (byte) 0x14;
+        System.arraycopy(hash160, 0, script, 3, 20);
+        script[23] = (byte) 0x88;
+        script[24] = (byte) 0xac;
+        return script;
+    }
+
+    public static byte[] p2shScript(byte[] hash160)
+    {
+        byte[] script = new byte[23];
+        script[0] = (byte) 0xa9;
+        script[1] = (byte) 0x14;
+        System.arraycopy(hash160, 0, script, 2, 20);
+        script[22] = (byte) 0x87;
+        return script;
+    }
+
+    public static byte[] p2pkScript(byte[] pubKey)
+    {
+        byte[] script = new byte[pubKey.length + 2];
+        script[0] = (byte) pubKey.length;
+        System.arraycopy(pubKey, 0, script, 1, pubKey.length);
+        script[script.length - 1] = (byte) 0xac;
+        return script;
+    }
+
+    public static byte[] compressedPubKey(Random rand)
+    {
+        byte[] pubKey = randomBytes(rand, 33);
+        pubKey[0] = (byte) 0x02;
+        return pubKey;
+    }
+
+    public static byte[] uncompressedPubKey(Random rand)
+    {
+        byte[] pubKey = randomBytes(rand, 65);
+        pubKey[0] = (byte) 0x04;
+        return pubKey;
+    }
+
+    // <72 byte signature> <33 byte pubkey>, the size a real P2PKH spend has
+    private static byte[] p2pkhScriptSig(Random rand)
+    {
+        byte[] sig = randomBytes(rand, 107);
+        sig[0] = (byte) 0x48;
+        sig[73] = (byte) 0x21;
+        return sig;
+    }
+
+    public static byte[] randomBytes(Random rand, int len)
+    {
+        byte[] bytes = new byte[len];
+        rand.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster.bench;
+
+import feebooster.Transaction;
+import feebooster.Utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionCodecBenchmark {
+
+    @Param({"1x2", "5x2", "50x20", "2000x1"})
+    public String shape;
+
+    private String txHex;
+    private Transaction tx;
+
+    @Setup
+    public void setup()
+    {
+        txHex = BenchFixtures.transactionHex(shape);
+        tx = new Transaction();
+        if(!Transaction.deserializeStr(txHex, tx))
+            throw new IllegalStateException("Fixture " + shape + " does not decode");
+    }
+
+    @Benchmark
+    public Transaction deserializeStr()
+    {
+        Transaction decoded = new Transaction();
+        Transaction.deserializeStr(txHex, decoded);
+        return decoded;
+    }
+
+    @Benchmark
+    public byte[] serializeSigned()
+    {
+        return Transaction.serialize(tx, false);
+    }
+
+    @Benchmark
+    public byte[] serializeUnsigned()
+    {
+        return Transaction.serialize(tx, true);
+    }
+
+    @Benchmark
+    public byte[] hexStringToByteArray()
+    {
+        return Utils.hexStringToByteArray(txHex);
+    }
+}
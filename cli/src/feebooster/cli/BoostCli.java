@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster.cli;
+
+import feebooster.BoostDaemon;
+import feebooster.BoostEngine;
+import feebooster.BoostPipeline;
+import feebooster.Booster;
+import feebooster.Broadcaster;
+import feebooster.Hex;
+import feebooster.Metrics;
+import feebooster.Transaction;
+import feebooster.TxDecodeException;
+import feebooster.Utils;
+
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Command line front end to BoostEngine and BoostDaemon
+public class BoostCli {
+
+    private static final String USAGE =
+            "Usage: BoostCli [--rbf | --cpfp --pay-to <address> [--package]] [--fee-rate <sat/vB>] [--output <index>]\n" +
+            "                [--concurrency <n>] [--batch <n>] [--in <file>] [--out <file>]\n" +
+            "\n" +
+            "Reads one txid or raw transaction hex per line (stdin by default) and writes one JSON result\n" +
+            "per line (stdout by default) holding the unsigned replacement or child transaction.\n" +
+            "Without --fee-rate the current fastest fee estimate is used, and the run stops if no estimate\n" +
+            "younger than its TTL can be fetched. Without --output the largest output is deducted from (RBF)\n" +
+            "or spent (CPFP). With --package a single child spends from every transaction and pays enough\n" +
+            "to lift them all to the fee rate.\n" +
+            "\n" +
+            "       BoostCli --watch [--rbf | --cpfp --pay-to <address>] [--output <index>] [--patience <minutes>]\n" +
+            "                [--check-every <seconds>] [--concurrency <n>] [--in <file>] [--out <file>]\n" +
+            "\n" +
+            "Watches the signed transactions read from the input until they confirm, rebroadcasting any\n" +
+            "that drop out of the mempool. One still unconfirmed after the patience runs out gets its next\n" +
+            "unsigned RBF or CPFP step written out; feed it back in once signed to watch it instead.";
+
+    public static void main(String[] args) throws Exception
+    {
+        BoostEngine.Policy policy = new BoostEngine.Policy();
+        int concurrency = BoostEngine.DEFAULT_NETWORK_CONCURRENCY;
+        int batch = BoostEngine.DEFAULT_BATCH_SIZE;
+        String inFile = null;
+        String outFile = null;
+        boolean watch = false;
+        long patienceMillis = BoostDaemon.DEFAULT_PATIENCE_MILLIS;
+        long checkPeriodMillis = BoostDaemon.DEFAULT_CHECK_PERIOD_MILLIS;
+
+        try {
+            for(int i = 0; i < args.length; i++)
+            {
+                String arg = args[i];
+                if(arg.equals("--rbf"))
+                    policy.setRbf(true);
+                else if(arg.equals("--cpfp"))
+                    policy.setRbf(false);
+                else if(arg.equals("--package"))
+                {
+                    policy.setRbf(false);
+                    policy.setPackage(true);
+                }
+                else if(arg.equals("--pay-to"))
+                    policy.setPayTo(args[++i]);
+                else if(arg.equals("--fee-rate"))
+                    policy.setFeeRate(Long.parseLong(args[++i]));
+                else if(arg.equals("--output"))
+                    policy.setOutput(Integer.parseInt(args[++i]));
+                else if(arg.equals("--concurrency"))
+                    concurrency = Integer.parseInt(args[++i]);
+                else if(arg.equals("--batch"))
+                    batch = Integer.parseInt(args[++i]);
+                else if(arg.equals("--watch"))
+                    watch = true;
+                else if(arg.equals("--patience"))
+                    patienceMillis = Long.parseLong(args[++i]) * 60 * 1000;
+                else if(arg.equals("--check-every"))
+                    checkPeriodMillis = Long.parseLong(args[++i]) * 1000;
+                else if(arg.equals("--in"))
+                    inFile = args[++i];
+                else if(arg.equals("--out"))
+                    outFile = args[++i];
+                else
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+            if(concurrency < 1 || batch < 1)
+                throw new IllegalArgumentException("--concurrency and --batch must be at least 1");
+        } catch (RuntimeException e) {
+            // Covers a missing option value and bad numbers too
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                inFile == null || inFile.equals("-") ? System.in : new FileInputStream(inFile), StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                outFile == null || outFile.equals("-") ? System.out : new FileOutputStream(outFile), StandardCharsets.UTF_8));
+
+        if(watch)
+        {
+            if(!policy.isRbf() && Booster.addressToScript(policy.getPayTo()) == null)
+            {
+                System.err.println("CPFP needs a valid address to pay to");
+                System.exit(2);
+            }
+            try {
+                watch(policy, concurrency, patienceMillis, checkPeriodMillis, in, out);
+            } finally {
+                in.close();
+                out.close();
+            }
+            return;
+        }
+
+        BoostEngine engine;
+        try {
+            engine = new BoostEngine(BoostPipeline.getSource(), policy, concurrency);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        try {
+            engine.setBatchSize(batch);
+            int boosted = engine.run(in, out);
+            System.err.println("Boosted " + boosted + " transactions");
+            if(Metrics.ENABLED)
+                System.err.print(Metrics.report());
+        } catch (IllegalStateException e) {
+            // No usable fee estimate
+            System.err.println(e.getMessage() + " with --fee-rate");
+            System.exit(1);
+        } finally {
+            engine.close();
+            in.close();
+            out.close();
+        }
+    }
+
+    // Tracks every line read until input ends, then keeps going until nothing is left to watch
+    private static void watch(BoostEngine.Policy policy, int concurrency, long patienceMillis, long checkPeriodMillis,
+                              BufferedReader in, final Writer out) throws IOException, InterruptedException
+    {
+        BoostDaemon.Listener listener = new BoostDaemon.Listener() {
+            @Override
+            public void confirmed(BoostDaemon.Tracked tracked) {
+                write(out, event("confirmed", tracked));
+            }
+
+            @Override
+            public void rebroadcast(BoostDaemon.Tracked tracked) {
+                write(out, event("rebroadcast", tracked));
+            }
+
+            @Override
+            public void escalated(BoostDaemon.Tracked tracked, Transaction next, long feeRate) {
+                JSONObject event = event(policy.isRbf() ? "replace" : "child", tracked);
+                event.put("step", tracked.getSteps());
+                event.put("feeRate", feeRate);
+                event.put("hex", Utils.bytesToHex(Transaction.serialize(next, true)));
+                write(out, event);
+            }
+
+            @Override
+            public void failed(BoostDaemon.Tracked tracked, String reason) {
+                JSONObject event = event("failed", tracked);
+                event.put("error", reason);
+                write(out, event);
+            }
+        };
+
+        BoostDaemon daemon = new BoostDaemon(BoostPipeline.getSource(), policy, listener, Broadcaster::broadcastTransaction,
+                checkPeriodMillis, patienceMillis, concurrency);
+        try {
+            daemon.start();
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#"))
+                    continue;
+                JSONObject event = new JSONObject();
+                try {
+                    BoostDaemon.Tracked tracked = daemon.track(Hex.decode(line));
+                    event = event("tracking", tracked);
+                } catch (IllegalArgumentException e) {
+                    event.put("event", "invalid");
+                    event.put("error", e.getMessage());
+                } catch (TxDecodeException e) {
+                    event.put("event", "invalid");
+                    event.put("error", e.getMessage());
+                }
+                write(out, event);
+            }
+            while(daemon.size() > 0)
+                Thread.sleep(1000);
+        } finally {
+            daemon.close();
+        }
+    }
+
+    private static JSONObject event(String name, BoostDaemon.Tracked tracked)
+    {
+        JSONObject event = new JSONObject();
+        event.put("event", name);
+        event.put("txid", tracked.getTxid());
+        return event;
+    }
+
+    private static void write(Writer out, JSONObject event)
+    {
+        synchronized (out) {
+            try {
+                out.write(event.toString());
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+// HTTP access to the block explorer and fee APIs. Requests go through a shared java.net.http client
+// that speaks HTTP/2 to https hosts, so parallel lookups share one multiplexed connection per host,
+// and falls back to pooled HTTP/1.1 connections otherwise. Every request has connect and read
+// timeouts that can be set per host, and responses are requested gzipped and streamed through
+// JsonFieldReader.
+public class ApiClient {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 10000;
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/51.0.2704.84 Safari/537.36";
+
+    private static final Map<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+
+    // The connect timeout belongs to the client, so there is one client per timeout in use
+    private static final Map<Integer, HttpClient> clients = new ConcurrentHashMap<Integer, HttpClient>();
+
+    // The request each thread is waiting on, so that abort can cut it off from another thread
+    private static final Map<Thread, CompletableFuture<HttpResponse<InputStream>>> active =
+            new ConcurrentHashMap<Thread, CompletableFuture<HttpResponse<InputStream>>>();
+    private static final Endpoint DEFAULT_ENDPOINT = new Endpoint(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+
+    // Closes response bodies that are still being read when their read timeout runs out
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "api-read-timeout");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    public static class Endpoint {
+        private final int connectTimeoutMillis;
+        private final int readTimeoutMillis;
+
+        public Endpoint(int connectTimeoutMillis, int readTimeoutMillis)
+        {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.readTimeoutMillis = readTimeoutMillis;
+        }
+
+        public int getConnectTimeoutMillis()
+        {
+            return connectTimeoutMillis;
+        }
+
+        // Bounds the wait for the response headers, and then separately the time taken to read the body
+        public int getReadTimeoutMillis()
+        {
+            return readTimeoutMillis;
+        }
+    }
+
+    public static void setEndpoint(String host, Endpoint endpoint)
+    {
+        endpoints.put(host.toLowerCase(), endpoint);
+    }
+
+    public static Endpoint getEndpoint(String host)
+    {
+        Endpoint endpoint = endpoints.get(host.toLowerCase());
+        return endpoint == null ? DEFAULT_ENDPOINT : endpoint;
+    }
+
+    // Cancels the request the thread is waiting on, or closes the body it is reading, which then
+    // fails with an IOException. Interrupting the thread alone does not stop the exchange.
+    public static void abort(Thread thread)
+    {
+        CompletableFuture<HttpResponse<InputStream>> call = active.get(thread);
+        if(call == null || call.cancel(true) || call.isCompletedExceptionally())
+            return;
+        closeQuietly(call.join().body());
+    }
+
+    // Fetches url and returns only the named top level fields of the JSON object it responds with
+    public static Map<String, Object> getFields(String url, String... fields) throws IOException
+    {
+        HttpRequest.Builder request = request(url).GET();
+        Metrics.Span span = Metrics.span("api", request.build().uri().getHost());
+        try {
+            Reader reader = reader(send(request));
+            try {
+                Map<String, Object> values = JsonFieldReader.read(reader, fields);
+                Metrics.end(span);
+                return values;
+            } finally {
+                // Releases the exchange even when the reader stopped before the end of the body
+                reader.close();
+            }
+        } catch (IOException e) {
+            Metrics.fail(span);
+            throw e;
+        } finally {
+            active.remove(Thread.currentThread());
+        }
+    }
+
+    // Fetches url and returns the whole body as text
+    public static String getString(String url, String method) throws IOException
+    {
+        HttpRequest.Builder request = request(url).method(method, HttpRequest.BodyPublishers.noBody());
+        Metrics.Span span = Metrics.span("api", request.build().uri().getHost());
+        try {
+            return readString(request, span);
+        } finally {
+            active.remove(Thread.currentThread());
+        }
+    }
+
+    // Sends body as the request and returns the whole response as text. Headers such as
+    // Authorization can be added per call.
+    public static String post(String url, String contentType, String body, Map<String, String> headers) throws IOException
+    {
+        HttpRequest.Builder request = request(url)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .header("Content-Type", contentType);
+        if(headers != null)
+            for(Map.Entry<String, String> header : headers.entrySet())
+                request.header(header.getKey(), header.getValue());
+        Metrics.Span span = Metrics.span("api", request.build().uri().getHost());
+        try {
+            return readString(request, span);
+        } finally {
+            active.remove(Thread.currentThread());
+        }
+    }
+
+    private static String readString(HttpRequest.Builder request, Metrics.Span span) throws IOException
+    {
+        try {
+            Reader reader = reader(send(request));
+            try {
+                StringBuilder sb = new StringBuilder();
+                char[] buf = new char[4096];
+                int n;
+                while((n = reader.read(buf)) > 0)
+                    sb.append(buf, 0, n);
+                Metrics.end(span);
+                return sb.toString();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            Metrics.fail(span);
+            throw e;
+        }
+    }
+
+    private static HttpRequest.Builder request(String url) throws IOException
+    {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException(e.getMessage());
+        }
+        if(uri.getHost() == null)
+            throw new MalformedURLException("No host in " + url);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(getEndpoint(uri.getHost()).getReadTimeoutMillis()))
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip");
+        // Plain http would first try an h2c upgrade, which costs a round trip and which local nodes
+        // do not speak, so it goes straight to HTTP/1.1
+        if(!"https".equalsIgnoreCase(uri.getScheme()))
+            request.version(HttpClient.Version.HTTP_1_1);
+        return request;
+    }
+
+    private static HttpClient client(Endpoint endpoint)
+    {
+        return clients.computeIfAbsent(endpoint.getConnectTimeoutMillis(), millis -> HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(millis))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build());
+    }
+
+    // Sends the request and waits for the response headers. Registers the call as the calling thread's
+    // active request, callers remove it when done.
+    private static HttpResponse<InputStream> send(HttpRequest.Builder builder) throws IOException
+    {
+        HttpRequest request = builder.build();
+        // A cancelled lookup stops before its next request
+        if(Thread.currentThread().isInterrupted())
+            throw new InterruptedIOException("Interrupted before requesting " + request.uri());
+        Endpoint endpoint = getEndpoint(request.uri().getHost());
+        CompletableFuture<HttpResponse<InputStream>> call =
+                client(endpoint).sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        active.put(Thread.currentThread(), call);
+        HttpResponse<InputStream> response;
+        try {
+            response = call.get();
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            // Left set so the rest of the lookup stops too
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Aborted request to " + request.uri());
+        } catch (ExecutionException e) {
+            // The client reports its own cancellation of the exchange this way
+            if(e.getCause() instanceof CancellationException)
+                throw new InterruptedIOException("Aborted request to " + request.uri());
+            // Timeouts and connection failures are IOExceptions already
+            if(e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Request to " + request.uri() + " failed", e.getCause());
+        }
+        InputStream body = response.body();
+        watchdog.schedule(new Runnable() {
+            @Override
+            public void run() {
+                closeQuietly(body);
+            }
+        }, endpoint.getReadTimeoutMillis(), TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    private static Reader reader(HttpResponse<InputStream> response) throws IOException
+    {
+        InputStream in = response.body();
+        if(response.statusCode() != 200)
+        {
+            // Drain the error body so the connection can still be reused
+            byte[] buf = new byte[1024];
+            try {
+                while(in.read(buf) > 0);
+            } finally {
+                in.close();
+            }
+            // Same as HttpURLConnection, so callers can tell a missing resource from a failure
+            if(response.statusCode() == 404)
+                throw new FileNotFoundException(response.uri().toString());
+            throw new IOException("HTTP " + response.statusCode() + " from " + response.uri());
+        }
+        if("gzip".equalsIgnoreCase(response.headers().firstValue("Content-Encoding").orElse(null)))
+            in = new GZIPInputStream(in);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static void closeQuietly(InputStream in)
+    {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Already failed or closed, the reader sees that for itself
+        }
+    }
+}
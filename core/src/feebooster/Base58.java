@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.util.Arrays;
+
+public class Base58 {
+
+    private static final char[] ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+    private static final int[] INDEXES = new int[128];
+    static {
+        Arrays.fill(INDEXES, -1);
+        for (int i = 0; i < ALPHABET.length; i++)
+            INDEXES[ALPHABET[i]] = i;
+    }
+
+    // The conversion works on limbs holding 5 base58 digits (58^5 < 2^31) or 32 bits at a time
+    private static final int DIGITS_PER_LIMB = 5;
+    private static final long LIMB_BASE = 58L * 58 * 58 * 58 * 58;
+    private static final long[] POW58 = {1, 58, 58 * 58, 58 * 58 * 58, 58L * 58 * 58 * 58, LIMB_BASE};
+
+    public static String encode(byte[] input)
+    {
+        return encode(input, 0, input.length);
+    }
+
+    public static String encode(byte[] input, int offset, int length)
+    {
+        int end = offset + length;
+
+        // Leading zero bytes map straight to leading '1's
+        int zeros = 0;
+        while (offset + zeros < end && input[offset + zeros] == 0)
+            zeros++;
+
+        // Each byte needs log(256)/log(58) ~ 1.37 digits
+        int[] limbs = new int[(length - zeros) * 138 / 100 / DIGITS_PER_LIMB + 2];
+        int used = 0;
+
+        // Feed the number in 32 bit chunks, the first one taking whatever does not divide by 4
+        int pos = offset + zeros;
+        int chunkLen = (end - pos) % 4;
+        if (chunkLen == 0)
+            chunkLen = 4;
+        while (pos < end) {
+            long carry = 0;
+            for (int i = 0; i < chunkLen; i++)
+                carry = (carry << 8) | (input[pos++] & 0xff);
+            int shift = chunkLen * 8;
+            for (int j = 0; j < used; j++) {
+                carry += ((long) limbs[j]) << shift;
+                limbs[j] = (int) (carry % LIMB_BASE);
+                carry /= LIMB_BASE;
+            }
+            while (carry > 0) {
+                limbs[used++] = (int) (carry % LIMB_BASE);
+                carry /= LIMB_BASE;
+            }
+            chunkLen = 4;
+        }
+
+        // Write the digits from the least significant end
+        char[] out = new char[zeros + used * DIGITS_PER_LIMB];
+        int outPos = out.length;
+        for (int j = 0; j < used; j++) {
+            int limb = limbs[j];
+            for (int d = 0; d < DIGITS_PER_LIMB; d++) {
+                out[--outPos] = ALPHABET[limb % 58];
+                limb /= 58;
+            }
+        }
+
+        // Drop the zero padding of the top limb, then put back one '1' per leading zero byte
+        while (outPos < out.length && out[outPos] == ALPHABET[0])
+            outPos++;
+        for (int i = 0; i < zeros; i++)
+            out[--outPos] = ALPHABET[0];
+        return new String(out, outPos, out.length - outPos);
+    }
+
+    // Returns null if the input contains a character outside the alphabet
+    public static byte[] decode(CharSequence input)
+    {
+        int len = input.length();
+        int zeros = 0;
+        while (zeros < len && input.charAt(zeros) == ALPHABET[0])
+            zeros++;
+
+        // Each digit carries log(58)/log(256) ~ 0.733 bytes
+        int[] limbs = new int[(len - zeros) * 733 / 1000 / 4 + 2];
+        int used = 0;
+
+        int pos = zeros;
+        while (pos < len) {
+            int groupLen = Math.min(DIGITS_PER_LIMB, len - pos);
+            long carry = 0;
+            for (int i = 0; i < groupLen; i++) {
+                char c = input.charAt(pos++);
+                int digit = c < 128 ? INDEXES[c] : -1;
+                if (digit < 0)
+                    return null;
+                carry = carry * 58 + digit;
+            }
+            long mul = POW58[groupLen];
+            for (int j = 0; j < used; j++) {
+                carry += (limbs[j] & 0xffffffffL) * mul;
+                limbs[j] = (int) carry;
+                carry >>>= 32;
+            }
+            while (carry > 0) {
+                limbs[used++] = (int) carry;
+                carry >>>= 32;
+            }
+        }
+
+        // Count the significant bytes of the top limb
+        int topBytes = 0;
+        if (used > 0) {
+            int top = limbs[used - 1];
+            while (topBytes < 4 && (top >>> (topBytes * 8)) != 0)
+                topBytes++;
+        }
+        int valueLen = used == 0 ? 0 : (used - 1) * 4 + topBytes;
+
+        // Big endian bytes after the leading zeros
+        byte[] out = new byte[zeros + valueLen];
+        int outPos = out.length;
+        for (int j = 0; j < used; j++) {
+            int limb = limbs[j];
+            int n = (j == used - 1) ? topBytes : 4;
+            for (int b = 0; b < n; b++) {
+                out[--outPos] = (byte) limb;
+                limb >>>= 8;
+            }
+        }
+        return out;
+    }
+
+    // Base58Check: the payload with a version byte in front and 4 bytes of double SHA256 behind
+    public static String encodeChecked(byte version, byte[] payload)
+    {
+        byte[] bytes = new byte[1 + payload.length + 4];
+        bytes[0] = version;
+        System.arraycopy(payload, 0, bytes, 1, payload.length);
+        byte[] hash = Hashing.doubleSha256(bytes, 0, bytes.length - 4);
+        System.arraycopy(hash, 0, bytes, bytes.length - 4, 4);
+        return encode(bytes);
+    }
+
+    // Returns the version byte and payload without the checksum, or null if the input is
+    // not valid base58 or the checksum does not match
+    public static byte[] decodeChecked(CharSequence input)
+    {
+        byte[] decoded = decode(input);
+        if (decoded == null || decoded.length < 5)
+            return null;
+        int dataLen = decoded.length - 4;
+        byte[] hash = Hashing.doubleSha256(decoded, 0, dataLen);
+        for (int i = 0; i < 4; i++)
+            if (hash[i] != decoded[dataLen + i])
+                return null;
+        return Arrays.copyOf(decoded, dataLen);
+    }
+}
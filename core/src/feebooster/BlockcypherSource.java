@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Map;
+
+// Looks transactions up on the blockcypher explorer API. It is rate limited, so batches are
+// answered one txid at a time.
+public class BlockcypherSource implements TransactionSource {
+
+    public static final String TX_API = "https://api.blockcypher.com/v1/btc/main/txs/";
+
+    private final String baseUrl;
+
+    public BlockcypherSource()
+    {
+        this(TX_API);
+    }
+
+    public BlockcypherSource(String baseUrl)
+    {
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public byte[] getRawTransaction(String txid) throws IOException
+    {
+        Map<String, Object> fields = lookup(txid, "?includeHex=true", "hex");
+        if(fields == null || !(fields.get("hex") instanceof String))
+            return null;
+        return Hex.decode((String) fields.get("hex"));
+    }
+
+    @Override
+    public Long getFee(String txid) throws IOException
+    {
+        Map<String, Object> fields = lookup(txid, "", "fees");
+        if(fields == null || !(fields.get("fees") instanceof Number))
+            return null;
+        return JsonFieldReader.getLong(fields, "fees");
+    }
+
+    @Override
+    public Status getStatus(String txid) throws IOException
+    {
+        Map<String, Object> fields = lookup(txid, "", "confirmations");
+        if(fields == null)
+            return Status.MISSING;
+        Object confirmations = fields.get("confirmations");
+        return confirmations instanceof Number && ((Number) confirmations).longValue() > 0 ? Status.CONFIRMED : Status.MEMPOOL;
+    }
+
+    // Returns null for anything that is not a txid or that the API has never seen
+    private Map<String, Object> lookup(String txid, String query, String field) throws IOException
+    {
+        if(txid.length() != 64 || !Hex.isHex(txid))
+            return null;
+        try {
+            return ApiClient.getFields(baseUrl + txid + query, field);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Watches broadcast transactions until they confirm. Every tracked transaction waits in a priority
+// queue ordered by when it is next due. A single scheduler thread takes whatever is due and hands it
+// out in batches to a fixed number of network threads for one status lookup per batch. On each check:
+//  - confirmed transactions are dropped,
+//  - ones that fell out of the mempool, and are not in a block either, are broadcast again,
+//  - ones still waiting past their deadline get the next RBF or CPFP step built for signing.
+// Listeners are called on the network threads.
+public class BoostDaemon implements AutoCloseable {
+
+    public static final long DEFAULT_CHECK_PERIOD_MILLIS = 60 * 1000;
+    public static final long DEFAULT_PATIENCE_MILLIS = 30 * 60 * 1000;
+    public static final int DEFAULT_NETWORK_CONCURRENCY = 4;
+    public static final int STATUS_BATCH = 200;
+
+    // Each step asks at least this much more per vbyte than the last
+    public static final double ESCALATION_FACTOR = 1.5;
+
+    // Missing this many checks in a row gives up
+    public static final int MAX_REBROADCASTS = 5;
+
+    private static final long TICK_MILLIS = 1000;
+
+    public interface Listener {
+        void confirmed(Tracked tracked);
+
+        void rebroadcast(Tracked tracked);
+
+        // next is the unsigned replacement (RBF) or child (CPFP). Track it once signed.
+        void escalated(Tracked tracked, Transaction next, long feeRate);
+
+        // The transaction is no longer tracked
+        void failed(Tracked tracked, String reason);
+    }
+
+    // A transaction being watched
+    public static class Tracked {
+        private final byte[] raw;
+        private final Transaction tx;
+        private volatile long fee = -1;
+        private volatile long deadline;
+        private volatile long dueAt;
+        private volatile int steps = 0;
+        private volatile long lastRate = 0;
+        private volatile int misses = 0;
+        private volatile boolean boostedByChild = false;
+        private volatile boolean done = false;
+
+        Tracked(byte[] raw, Transaction tx, long deadline)
+        {
+            this.raw = raw;
+            this.tx = tx;
+            this.deadline = deadline;
+            this.dueAt = System.currentTimeMillis();
+        }
+
+        public String getTxid()
+        {
+            return tx.getHash();
+        }
+
+        public Transaction getTx()
+        {
+            return tx;
+        }
+
+        public byte[] getRaw()
+        {
+            return raw.clone();
+        }
+
+        // Fee paid, -1 until it has been worked out
+        public long getFee()
+        {
+            return fee;
+        }
+
+        // When the next step is due if it has not confirmed by then
+        public long getDeadline()
+        {
+            return deadline;
+        }
+
+        public int getSteps()
+        {
+            return steps;
+        }
+
+        // A tracked child already pays for this one, so it is only watched
+        public boolean isBoostedByChild()
+        {
+            return boostedByChild;
+        }
+    }
+
+    private final TransactionSource source;
+    private final FeeCalculator feeCalculator;
+    private final BoostEngine.Policy policy;
+    private final Listener listener;
+    private final Consumer<byte[]> rebroadcaster;
+    private final long checkPeriodMillis;
+    private final long patienceMillis;
+
+    private final PriorityQueue<Tracked> queue = new PriorityQueue<Tracked>(64, new Comparator<Tracked>() {
+        @Override
+        public int compare(Tracked a, Tracked b) {
+            return Long.compare(a.dueAt, b.dueAt);
+        }
+    });
+    private final Map<String, Tracked> byTxid = new HashMap<String, Tracked>();
+    private final Map<String, Tracked> bySpentOutput = new HashMap<String, Tracked>();
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService network;
+
+    public BoostDaemon(TransactionSource source, BoostEngine.Policy policy, Listener listener)
+    {
+        this(source, policy, listener, Broadcaster::broadcastTransaction, DEFAULT_CHECK_PERIOD_MILLIS,
+                DEFAULT_PATIENCE_MILLIS, DEFAULT_NETWORK_CONCURRENCY);
+    }
+
+    public BoostDaemon(TransactionSource source, BoostEngine.Policy policy, Listener listener, Consumer<byte[]> rebroadcaster,
+                       long checkPeriodMillis, long patienceMillis, int networkConcurrency)
+    {
+        this.source = source;
+        this.feeCalculator = new FeeCalculator(source);
+        this.policy = policy;
+        this.listener = listener;
+        this.rebroadcaster = rebroadcaster;
+        this.checkPeriodMillis = checkPeriodMillis;
+        this.patienceMillis = patienceMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("boost-daemon-"));
+        this.network = Executors.newFixedThreadPool(networkConcurrency, daemonThreads("boost-daemon-io-"));
+    }
+
+    public void start()
+    {
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    // Keep the schedule alive
+                    e.printStackTrace();
+                }
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Starts watching a signed transaction. One spending the same outputs as a tracked transaction
+    // replaces it, one spending a tracked transaction's output is its CPFP child.
+    public Tracked track(byte[] signedTx) throws TxDecodeException
+    {
+        byte[] raw = signedTx.clone();
+        Transaction tx = TxDecoder.decode(raw);
+        Tracked tracked = new Tracked(raw, tx, System.currentTimeMillis() + patienceMillis);
+        synchronized (queue) {
+            if(byTxid.containsKey(tx.getHash()))
+                return byTxid.get(tx.getHash());
+            for(TxInput in : tx.getInputs())
+            {
+                Tracked replaced = bySpentOutput.get(outpoint(in));
+                if(replaced != null)
+                {
+                    // Keeps the schedule of what it replaces
+                    tracked.steps = replaced.steps;
+                    tracked.lastRate = replaced.lastRate;
+                    remove(replaced);
+                }
+                Tracked parent = byTxid.get(in.getTxid());
+                if(parent != null)
+                    parent.boostedByChild = true;
+            }
+            byTxid.put(tx.getHash(), tracked);
+            for(TxInput in : tx.getInputs())
+                bySpentOutput.put(outpoint(in), tracked);
+            queue.add(tracked);
+        }
+        return tracked;
+    }
+
+    public void untrack(String txid)
+    {
+        synchronized (queue) {
+            Tracked tracked = byTxid.get(txid);
+            if(tracked != null)
+                remove(tracked);
+        }
+    }
+
+    public int size()
+    {
+        synchronized (queue) {
+            return byTxid.size();
+        }
+    }
+
+    // Takes everything that is due off the queue and checks it in batches
+    private void tick()
+    {
+        long now = System.currentTimeMillis();
+        List<Tracked> due = new ArrayList<Tracked>();
+        synchronized (queue) {
+            while(!queue.isEmpty() && queue.peek().dueAt <= now)
+                due.add(queue.poll());
+        }
+        for(int from = 0; from < due.size(); from += STATUS_BATCH)
+        {
+            final List<Tracked> batch = due.subList(from, Math.min(from + STATUS_BATCH, due.size()));
+            network.execute(new Runnable() {
+                @Override
+                public void run() {
+                    check(batch);
+                }
+            });
+        }
+    }
+
+    private void check(List<Tracked> batch)
+    {
+        List<String> txids = new ArrayList<String>(batch.size());
+        for(Tracked tracked : batch)
+            txids.add(tracked.getTxid());
+        Map<String, TransactionSource.Status> statuses;
+        try {
+            statuses = source.getStatuses(txids);
+        } catch (IOException e) {
+            // Try again next period
+            for(Tracked tracked : batch)
+                reschedule(tracked);
+            return;
+        }
+
+        // A node without -txindex reports confirmed transactions as missing too, ask another way
+        // before broadcasting them again
+        List<Transaction> missing = new ArrayList<Transaction>();
+        for(Tracked tracked : batch)
+            if(statuses.get(tracked.getTxid()) == TransactionSource.Status.MISSING)
+                missing.add(tracked.tx);
+        Set<String> confirmed;
+        try {
+            confirmed = missing.isEmpty() ? Collections.<String>emptySet() : source.findConfirmed(missing);
+        } catch (IOException e) {
+            for(Tracked tracked : batch)
+                reschedule(tracked);
+            return;
+        }
+
+        for(Tracked tracked : batch)
+        {
+            if(tracked.done)
+                continue;
+            TransactionSource.Status status = statuses.get(tracked.getTxid());
+            if(status == TransactionSource.Status.CONFIRMED || confirmed.contains(tracked.getTxid()))
+            {
+                untrack(tracked.getTxid());
+                listener.confirmed(tracked);
+                continue;
+            }
+            if(status == TransactionSource.Status.MISSING)
+            {
+                if(++tracked.misses > MAX_REBROADCASTS)
+                {
+                    fail(tracked, "Still missing after " + MAX_REBROADCASTS + " rebroadcasts");
+                    continue;
+                }
+                try {
+                    rebroadcaster.accept(tracked.raw);
+                    listener.rebroadcast(tracked);
+                } catch (RuntimeException e) {
+                    fail(tracked, "Rebroadcast failed: " + e.getMessage());
+                    continue;
+                }
+            }
+            else if(status == TransactionSource.Status.MEMPOOL)
+            {
+                tracked.misses = 0;
+                if(System.currentTimeMillis() >= tracked.deadline && !tracked.boostedByChild)
+                    escalate(tracked);
+            }
+            reschedule(tracked);
+        }
+    }
+
+    // Builds the next step at the higher of the fastest fee estimate and ESCALATION_FACTOR times
+    // the current rate or the last step's rate, whichever is higher
+    private void escalate(Tracked tracked)
+    {
+        tracked.deadline = System.currentTimeMillis() + patienceMillis;
+        try {
+            if(tracked.fee < 0)
+                tracked.fee = feeCalculator.fee(tracked.tx);
+        } catch (IOException e) {
+            fail(tracked, "Could not work out the fee paid: " + e.getMessage());
+            return;
+        }
+        if(tracked.fee < 0)
+        {
+            fail(tracked, "Could not work out the fee paid");
+            return;
+        }
+
+        long vsize = tracked.tx.getVsize();
+        long currentRate = Math.max((tracked.fee + vsize - 1) / vsize, tracked.lastRate);
+        // The built in fallback rates are no estimate at all and a stale one may be days old, escalate
+        // from the current rate alone until the refresh get() starts has come back
+        FeeEstimateCache cache = FeeEstimateCache.getShared();
+        FeeEstimate estimate = cache.get();
+        long feeRate = Math.max(estimate.isFallback() || cache.isStale() ? 0 : estimate.getFastestFee(),
+                (long) Math.ceil(currentRate * ESCALATION_FACTOR));
+        try {
+            // Work on a fresh copy, the tracked transaction stays as it was broadcast
+            Transaction tx = TxDecoder.decode(tracked.raw);
+            tx.setFee(tracked.fee);
+            int output = policy.getOutput() < 0 ? Booster.largestOutput(tx) : policy.getOutput();
+            Transaction next;
+            if(policy.isRbf())
+            {
+                long minFee = tracked.fee + Booster.MIN_RELAY_FEE_RATE * SizeEstimator.estimate(tx).getVsize();
+                Booster.bumpFee(tx, output, Math.max(Booster.recommendedRbfFee(tx, feeRate), minFee));
+                next = tx;
+            }
+            else
+            {
+                next = Booster.cpfpChildAtRate(Collections.singletonList(tx), Collections.singletonList(output),
+                        feeRate, policy.getPayTo());
+            }
+            tracked.steps++;
+            tracked.lastRate = feeRate;
+            listener.escalated(tracked, next, feeRate);
+        } catch (TxDecodeException e) {
+            fail(tracked, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            fail(tracked, e.getMessage());
+        }
+    }
+
+    private void fail(Tracked tracked, String reason)
+    {
+        untrack(tracked.getTxid());
+        listener.failed(tracked, reason);
+    }
+
+    private void reschedule(Tracked tracked)
+    {
+        synchronized (queue) {
+            if(tracked.done)
+                return;
+            // Checked again after a period, or at its deadline if that comes first
+            long now = System.currentTimeMillis();
+            long dueAt = now + checkPeriodMillis;
+            if(tracked.deadline > now && !tracked.boostedByChild)
+                dueAt = Math.min(dueAt, tracked.deadline);
+            tracked.dueAt = dueAt;
+            queue.add(tracked);
+        }
+    }
+
+    // Caller holds the queue lock
+    private void remove(Tracked tracked)
+    {
+        tracked.done = true;
+        queue.remove(tracked);
+        byTxid.remove(tracked.getTxid());
+        for(TxInput in : tracked.tx.getInputs())
+            bySpentOutput.remove(outpoint(in), tracked);
+    }
+
+    private static String outpoint(TxInput in)
+    {
+        return in.getTxid() + ":" + in.getVout();
+    }
+
+    @Override
+    public void close()
+    {
+        scheduler.shutdownNow();
+        network.shutdown();
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix)
+    {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, prefix + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+}
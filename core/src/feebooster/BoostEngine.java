@@ -0,0 +1,484 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Boosts transactions without the wizard. Input is one txid or raw transaction hex per line, output is
+// one JSON object per line, written as each transaction finishes. Lines are looked up in batches on a
+// fixed number of network threads, so the backends never see more than that many requests at once,
+// and the replacements or children are built on one thread per core.
+public class BoostEngine implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_NETWORK_CONCURRENCY = 4;
+    // How long a run without a fee rate waits for a stale fee estimate to be refreshed
+    public static final long ESTIMATE_TIMEOUT_SECONDS = 20;
+
+    // What to build for each transaction
+    public static class Policy {
+        private boolean rbf = true;
+        private long feeRate = 0;
+        private int output = -1;
+        private String payTo;
+        private boolean packageChild = false;
+
+        public boolean isRbf()
+        {
+            return rbf;
+        }
+
+        public void setRbf(boolean rbf)
+        {
+            this.rbf = rbf;
+        }
+
+        // Target in satoshis per virtual byte, 0 to use the current fastest fee estimate
+        public long getFeeRate()
+        {
+            return feeRate;
+        }
+
+        public void setFeeRate(long feeRate)
+        {
+            this.feeRate = feeRate;
+        }
+
+        // Output to deduct the fee from (RBF) or to spend (CPFP), -1 for the largest one
+        public int getOutput()
+        {
+            return output;
+        }
+
+        public void setOutput(int output)
+        {
+            this.output = output;
+        }
+
+        // Builds one CPFP child spending from all the transactions instead of one boost each
+        public boolean isPackage()
+        {
+            return packageChild;
+        }
+
+        public void setPackage(boolean packageChild)
+        {
+            this.packageChild = packageChild;
+        }
+
+        // Address the CPFP child pays to
+        public String getPayTo()
+        {
+            return payTo;
+        }
+
+        public void setPayTo(String payTo)
+        {
+            this.payTo = payTo;
+        }
+    }
+
+    private final TransactionSource source;
+    private final FeeCalculator feeCalculator;
+    private final Policy policy;
+    private final int networkConcurrency;
+    private final ExecutorService network;
+    private final ExecutorService cpu;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    public BoostEngine(TransactionSource source, Policy policy, int networkConcurrency)
+    {
+        if((!policy.isRbf() || policy.isPackage()) && Booster.addressToScript(policy.getPayTo()) == null)
+            throw new IllegalArgumentException("CPFP needs a valid address to pay to");
+        this.source = source;
+        this.feeCalculator = new FeeCalculator(source);
+        this.policy = policy;
+        this.networkConcurrency = networkConcurrency;
+        this.network = Executors.newFixedThreadPool(networkConcurrency, daemonThreads("boost-engine-io-"));
+        this.cpu = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), daemonThreads("boost-engine-cpu-"));
+    }
+
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    // The fastest rate of a fee estimate no older than its TTL, waiting up to ESTIMATE_TIMEOUT_SECONDS
+    // for a refresh if the cached one is stale. The persisted estimate can be days old and the built in
+    // fallback rates are no estimate at all, so a run must not be priced on either. Throws
+    // IllegalStateException if no fresh estimate arrives in time.
+    private static long estimatedFeeRate() throws InterruptedException
+    {
+        FeeEstimateCache cache = FeeEstimateCache.getShared();
+        FeeEstimate estimate = cache.get();
+        if(cache.isStale() || estimate.isFallback())
+        {
+            try {
+                estimate = cache.refresh().get(ESTIMATE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                throw new IllegalStateException("No fresh fee estimate could be fetched, a fee rate has to be given");
+            }
+        }
+        return estimate.getFastestFee();
+    }
+
+    // Processes every line of in and returns how many transactions were boosted. Results come out in
+    // the order they finish, each carries the line number it came from. In package mode the last line
+    // holds the one child spending from every parent that resolved.
+    public int run(BufferedReader in, Writer out) throws IOException, InterruptedException
+    {
+        long feeRate = policy.getFeeRate() > 0 ? policy.getFeeRate() : estimatedFeeRate();
+        Run run = new Run(feeRate, out, networkConcurrency * 2);
+
+        List<String> batch = new ArrayList<String>(batchSize);
+        int firstLine = 1;
+        int lineNo = 0;
+        String line;
+        while((line = in.readLine()) != null)
+        {
+            lineNo++;
+            if(batch.isEmpty())
+                firstLine = lineNo;
+            batch.add(line.trim());
+            if(batch.size() == batchSize)
+            {
+                submit(run, batch, firstLine);
+                batch = new ArrayList<String>(batchSize);
+            }
+        }
+        if(!batch.isEmpty())
+            submit(run, batch, firstLine);
+
+        // Wait for the stragglers
+        run.inFlight.acquire(run.maxBatches);
+        run.inFlight.release(run.maxBatches);
+        if(policy.isPackage() && run.writeErrors.isEmpty())
+            write(run, buildPackage(run));
+        out.flush();
+        if(!run.writeErrors.isEmpty())
+            throw new IOException("Could not write results", run.writeErrors.get(0));
+        return run.boosted.get();
+    }
+
+    // State of one call to run
+    private static class Run {
+        private final long feeRate;
+        private final Writer out;
+        private final int maxBatches;
+
+        // Each batch holds a permit until its last result is written, which bounds the lines in memory
+        private final Semaphore inFlight;
+        private final AtomicInteger boosted = new AtomicInteger();
+        private final List<Throwable> writeErrors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        // Parents and the outputs to spend from them in package mode
+        private final List<Item> packaged = new ArrayList<Item>();
+
+        Run(long feeRate, Writer out, int maxBatches)
+        {
+            this.feeRate = feeRate;
+            this.out = out;
+            this.maxBatches = maxBatches;
+            this.inFlight = new Semaphore(maxBatches);
+        }
+    }
+
+    private void submit(Run run, List<String> lines, int firstLine) throws InterruptedException
+    {
+        run.inFlight.acquire();
+        CompletableFuture.supplyAsync(() -> lookup(lines, firstLine), network)
+                .thenCompose(items -> {
+                    List<CompletableFuture<Void>> built = new ArrayList<CompletableFuture<Void>>(items.size());
+                    for(Item item : items)
+                        built.add(CompletableFuture.runAsync(() -> write(run, build(run, item)), cpu));
+                    return CompletableFuture.allOf(built.toArray(new CompletableFuture<?>[built.size()]));
+                })
+                .whenComplete((ignored, error) -> {
+                    if(error != null)
+                        run.writeErrors.add(error);
+                    run.inFlight.release();
+                });
+    }
+
+    // One input line on its way through
+    private static class Item {
+        private final int line;
+        private final String input;
+        private Transaction tx;
+        private int output;
+        private String error;
+
+        Item(int line, String input)
+        {
+            this.line = line;
+            this.input = input;
+        }
+    }
+
+    // Resolves a batch of lines to transactions with their fees. Lines that do not resolve keep an error.
+    private List<Item> lookup(List<String> lines, int firstLine)
+    {
+        List<Item> items = new ArrayList<Item>(lines.size());
+        Set<String> txids = new HashSet<String>();
+        for(int i = 0; i < lines.size(); i++)
+        {
+            String line = lines.get(i);
+            if(line.isEmpty() || line.startsWith("#"))
+                continue;
+            Item item = new Item(firstLine + i, line);
+            items.add(item);
+            if(line.length() == 64 && Hex.isHex(line))
+            {
+                txids.add(line.toUpperCase());
+                continue;
+            }
+            Transaction tx = new Transaction();
+            if(Transaction.deserializeStr(line, tx))
+                item.tx = tx;
+            else
+                item.error = "Not a txid or raw transaction";
+        }
+
+        // One round trip for all the txids, one more for all their parents
+        List<Transaction> txs = new ArrayList<Transaction>(items.size());
+        try {
+            Map<String, byte[]> raw = txids.isEmpty() ? Collections.<String, byte[]>emptyMap() : source.getRawTransactions(txids);
+            for(Item item : items)
+            {
+                if(item.tx == null && item.error == null)
+                {
+                    byte[] bytes = raw.get(item.input.toUpperCase());
+                    if(bytes == null)
+                    {
+                        item.error = "Transaction not found";
+                        continue;
+                    }
+                    try {
+                        item.tx = TxDecoder.decode(bytes);
+                    } catch (TxDecodeException e) {
+                        item.error = e.getMessage();
+                        continue;
+                    }
+                }
+                if(item.tx != null)
+                    txs.add(item.tx);
+            }
+            feeCalculator.prefetch(txs);
+        } catch (IOException e) {
+            for(Item item : items)
+                if(item.error == null)
+                    item.error = "Lookup failed: " + e.getMessage();
+            return items;
+        }
+
+        for(Item item : items)
+        {
+            if(item.error != null)
+                continue;
+            try {
+                long fee = feeCalculator.fee(item.tx);
+                if(fee < 0)
+                {
+                    item.error = "Could not work out the fee paid";
+                    continue;
+                }
+                item.tx.setFee(fee);
+                item.tx.setTotalAmtPre(fee + item.tx.getOutAmt());
+            } catch (IOException e) {
+                item.error = "Lookup failed: " + e.getMessage();
+            }
+        }
+        return items;
+    }
+
+    // Builds the replacement or child for a resolved line and describes the outcome. A bug hit by one
+    // line is reported on that line instead of failing the whole run.
+    private JSONObject build(Run run, Item item)
+    {
+        try {
+            return buildItem(run, item);
+        } catch (RuntimeException e) {
+            JSONObject result = new JSONObject();
+            result.put("line", item.line);
+            result.put("input", item.input);
+            result.put("error", e.toString());
+            return result;
+        }
+    }
+
+    private JSONObject buildItem(Run run, Item item)
+    {
+        long feeRate = run.feeRate;
+        JSONObject result = new JSONObject();
+        result.put("line", item.line);
+        result.put("input", item.input);
+        if(item.error != null)
+        {
+            result.put("error", item.error);
+            return result;
+        }
+        Transaction tx = item.tx;
+        result.put("txid", tx.getHash());
+        result.put("fee", tx.getFee());
+        int output = policy.getOutput() < 0 ? Booster.largestOutput(tx) : policy.getOutput();
+        if(policy.isPackage())
+        {
+            // Checked here so one bad line does not sink the whole package
+            if(output >= tx.getOutputs().size())
+            {
+                result.put("error", "No output " + output);
+                return result;
+            }
+            item.output = output;
+            synchronized (run.packaged) {
+                run.packaged.add(item);
+            }
+            result.put("mode", "cpfp");
+            result.put("output", output);
+            result.put("status", "packaged");
+            return result;
+        }
+        try {
+            if(policy.isRbf())
+            {
+                long recommended = Booster.recommendedRbfFee(tx, feeRate);
+                result.put("mode", "rbf");
+                if(tx.getFee() >= recommended)
+                {
+                    result.put("status", "sufficient");
+                    return result;
+                }
+                long newFee = Math.max(recommended, tx.getFee() + Booster.MIN_RELAY_FEE_RATE * SizeEstimator.estimate(tx).getVsize());
+                Booster.bumpFee(tx, output, newFee);
+                result.put("newFee", newFee);
+                result.put("hex", Utils.bytesToHex(Transaction.serialize(tx, true)));
+            }
+            else
+            {
+                List<Transaction> parents = Collections.singletonList(tx);
+                List<Integer> outputs = Collections.singletonList(output);
+                Transaction child = Booster.cpfpChildAtRate(parents, outputs, feeRate, policy.getPayTo());
+                result.put("mode", "cpfp");
+                putChild(result, child, Booster.spentOutputs(parents, outputs), Booster.packageSolver(parents, feeRate));
+            }
+            result.put("output", output);
+            result.put("status", "boosted");
+        } catch (IllegalArgumentException e) {
+            result.put("error", e.getMessage());
+        }
+        return result;
+    }
+
+    // Builds the one child for every packaged parent, in input order so the output is repeatable
+    private JSONObject buildPackage(Run run)
+    {
+        JSONObject result = new JSONObject();
+        result.put("mode", "cpfp-package");
+        List<Item> items = new ArrayList<Item>(run.packaged);
+        if(items.isEmpty())
+        {
+            result.put("error", "No parents to spend from");
+            return result;
+        }
+        Collections.sort(items, new Comparator<Item>() {
+            @Override
+            public int compare(Item a, Item b) {
+                return Integer.compare(a.line, b.line);
+            }
+        });
+        List<Transaction> parents = new ArrayList<Transaction>(items.size());
+        List<Integer> outputs = new ArrayList<Integer>(items.size());
+        JSONArray parentTxids = new JSONArray();
+        Set<String> seen = new HashSet<String>();
+        for(Item item : items)
+        {
+            // The same parent given twice is spent once
+            if(!seen.add(item.tx.getHash() + ":" + item.output))
+                continue;
+            parents.add(item.tx);
+            outputs.add(item.output);
+            parentTxids.put(item.tx.getHash());
+        }
+        result.put("parents", parentTxids);
+        try {
+            Transaction child = Booster.cpfpChildAtRate(parents, outputs, run.feeRate, policy.getPayTo());
+            putChild(result, child, Booster.spentOutputs(parents, outputs), Booster.packageSolver(parents, run.feeRate));
+            result.put("status", "boosted");
+        } catch (IllegalArgumentException e) {
+            result.put("error", e.getMessage());
+        } catch (RuntimeException e) {
+            result.put("error", e.toString());
+        }
+        return result;
+    }
+
+    private static void putChild(JSONObject result, Transaction child, List<TxOutput> spent, CpfpFeeSolver solver)
+    {
+        result.put("childFee", child.getFee());
+        long childSize = CpfpFeeSolver.childSize(child, spent);
+        result.put("childVsize", childSize);
+        result.put("packageRate", solver.effectiveRate(childSize, child.getFee()));
+        result.put("hex", Utils.bytesToHex(Transaction.serialize(child, true)));
+    }
+
+    private static void write(Run run, JSONObject result)
+    {
+        if(result.has("hex"))
+            run.boosted.addAndGet(result.has("parents") ? ((JSONArray) result.opt("parents")).length() : 1);
+        String line = result.toString();
+        Writer out = run.out;
+        synchronized (out) {
+            try {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        network.shutdown();
+        cpu.shutdown();
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix)
+    {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, prefix + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+}
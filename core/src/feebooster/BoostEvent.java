@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// One replacement or child built, recorded when a flight recording is running. Only loaded by
+// Metrics once it has checked the JVM has JFR.
+@Name("feebooster.Boost")
+@Label("Fee Boost")
+@Category("FeeBooster")
+@Description("A replacement or child transaction was built")
+class BoostEvent extends Event {
+
+    @Label("Kind")
+    String kind;
+
+    @Label("Boosted Txid")
+    String txid;
+
+    @Label("Fee")
+    long fee;
+
+    @Label("Virtual Size")
+    long vsize;
+
+    @Label("Fee Rate")
+    double feeRate;
+
+    @Label("Build Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long buildTime;
+
+    static void commit(String kind, String txid, long fee, long vsize, long buildNanos)
+    {
+        BoostEvent event = new BoostEvent();
+        if(!event.shouldCommit())
+            return;
+        event.kind = kind;
+        event.txid = txid;
+        event.fee = fee;
+        event.vsize = vsize;
+        event.feeRate = vsize == 0 ? 0 : (double) fee / vsize;
+        event.buildTime = buildNanos;
+        event.commit();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// The network side of a boost: lookup, estimate and broadcast. Every step runs on a small pool of
+// daemon threads and hands back a CompletableFuture, so callers such as the GUI never block on I/O.
+public class BoostPipeline {
+
+    private static volatile TransactionSource source = defaultSource();
+    private static volatile FeeCalculator feeCalculator = new FeeCalculator(source);
+
+    private static final ExecutorService IO = Executors.newFixedThreadPool(4, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "boost-io-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    // A transaction with its fee filled in, plus the fee rates to recommend from
+    public static class Prepared {
+        private final Transaction tx;
+        private final FeeEstimate feeEstimate;
+
+        Prepared(Transaction tx, FeeEstimate feeEstimate)
+        {
+            this.tx = tx;
+            this.feeEstimate = feeEstimate;
+        }
+
+        public Transaction getTx()
+        {
+            return tx;
+        }
+
+        public FeeEstimate getFeeEstimate()
+        {
+            return feeEstimate;
+        }
+    }
+
+    // A task on IO that stops when its future is cancelled: the thread running it is interrupted
+    // and the request it is waiting on disconnected, instead of holding the thread until the read times out
+    private static class Cancellable<T> extends CompletableFuture<T> implements Runnable {
+        private final Supplier<T> task;
+        private Thread runner;
+
+        Cancellable(Supplier<T> task)
+        {
+            this.task = task;
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized(this)
+            {
+                if(isDone())
+                    return;
+                runner = Thread.currentThread();
+            }
+            try {
+                complete(task.get());
+            } catch (RuntimeException e) {
+                completeExceptionally(e);
+            } finally {
+                synchronized(this)
+                {
+                    runner = null;
+                    // A cancel that came in late must not interrupt the next task on this thread
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            synchronized(this)
+            {
+                if(cancelled && runner != null)
+                {
+                    runner.interrupt();
+                    ApiClient.abort(runner);
+                }
+            }
+            return cancelled;
+        }
+    }
+
+    // Works out the fee the transaction paid while the fee estimate comes from the shared cache.
+    // Cancelling the returned future stops the lookup too.
+    public static CompletableFuture<Prepared> prepare(Transaction tx)
+    {
+        Cancellable<Long> fee = new Cancellable<Long>(() -> lookupFee(tx));
+        IO.execute(fee);
+        CompletableFuture<FeeEstimate> estimate = FeeEstimateCache.getShared().getAsync();
+        CompletableFuture<Prepared> prepared = fee.thenCombine(estimate, (paid, feeEstimate) -> {
+            tx.setFee(paid);
+            tx.setTotalAmtPre(tx.getFee() + tx.getOutAmt());
+            return new Prepared(tx, feeEstimate);
+        });
+        // Cancelling a dependent stage does not reach the stages it depends on
+        prepared.whenComplete((ignored, error) -> {
+            if(prepared.isCancelled())
+                fee.cancel(true);
+        });
+        return prepared;
+    }
+
+    // Where prepare looks up parent transactions and fees, blockcypher unless a node is configured
+    public static void setSource(TransactionSource transactionSource)
+    {
+        source = transactionSource;
+        feeCalculator = new FeeCalculator(transactionSource);
+    }
+
+    public static FeeCalculator getFeeCalculator()
+    {
+        return feeCalculator;
+    }
+
+    public static TransactionSource getSource()
+    {
+        return source;
+    }
+
+    public static CompletableFuture<PropagationTracker> broadcast(byte[] txBytes)
+    {
+        return CompletableFuture.supplyAsync(() -> Broadcaster.broadcastTransaction(txBytes), IO);
+    }
+
+    // Connects the shared broadcaster in the background
+    public static CompletableFuture<Void> warmUp()
+    {
+        return CompletableFuture.runAsync(() -> Broadcaster.getShared().start(), IO);
+    }
+
+    // Computed from the parent outputs where they resolve, the source's fee otherwise
+    private static long lookupFee(Transaction tx)
+    {
+        try {
+            long fee = feeCalculator.fee(tx);
+            if(fee < 0)
+                throw new IllegalStateException("Could not look up transaction " + tx.getHash());
+
+            // A CPFP child of this transaction can then be priced without another lookup
+            feeCalculator.add(tx);
+            return fee;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not look up transaction " + tx.getHash(), e);
+        }
+    }
+
+    // Uses a local node when feebooster.rpcUrl is set, authenticating with feebooster.rpcCookie
+    // or feebooster.rpcUser and feebooster.rpcPassword
+    private static TransactionSource defaultSource()
+    {
+        String rpcUrl = System.getProperty("feebooster.rpcUrl");
+        if(rpcUrl == null)
+            return new BlockcypherSource();
+        String cookie = System.getProperty("feebooster.rpcCookie");
+        if(cookie != null)
+            return new RpcTransactionSource(rpcUrl, new File(cookie));
+        return new RpcTransactionSource(rpcUrl, System.getProperty("feebooster.rpcUser", ""),
+                System.getProperty("feebooster.rpcPassword", ""));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.util.*;
+
+// The fee boosting itself, shared by the wizard and the headless engine: recommended fees, taking a
+// higher fee out of an output for RBF, and building the child transaction for CPFP.
+public class Booster {
+
+    // A replacement has to pay at least this much per byte more than what it replaces (BIP 125)
+    public static final long MIN_RELAY_FEE_RATE = 1;
+
+    // Rates are per virtual byte of the signed replacement, which has the same inputs as tx
+    public static long recommendedRbfFee(Transaction tx, long feeRate)
+    {
+        return feeRate * SizeEstimator.estimate(tx).getVsize();
+    }
+
+    // Solver for a child of the given parents, each parent counted once
+    public static CpfpFeeSolver packageSolver(List<Transaction> parents, long feeRate)
+    {
+        CpfpFeeSolver solver = new CpfpFeeSolver(feeRate);
+        for(Transaction parent : distinct(parents))
+            solver.add(parent);
+        return solver;
+    }
+
+    // Index of the output with the highest value, the default one to deduct from or spend
+    public static int largestOutput(Transaction tx)
+    {
+        List<TxOutput> outputs = tx.getOutputs();
+        int largest = 0;
+        for(int i = 1; i < outputs.size(); i++)
+            if(outputs.get(i).getValue() > outputs.get(largest).getValue())
+                largest = i;
+        return largest;
+    }
+
+    // Raises tx's fee to newFee by taking the difference out of the given output
+    public static void bumpFee(Transaction tx, int output, long newFee)
+    {
+        if(output < 0 || output >= tx.getOutputs().size())
+            throw new IllegalArgumentException("No output " + output);
+        long minFee = tx.getFee() + MIN_RELAY_FEE_RATE * SizeEstimator.estimate(tx).getVsize();
+        if(newFee < minFee)
+            throw new IllegalArgumentException("Replacement fee " + newFee + " is below the minimum of " + minFee);
+        long step = newFee - tx.getFee();
+        TxOutput out = tx.getOutputs().get(output);
+        if(out.getValue() < step)
+            throw new IllegalArgumentException("Output " + output + " cannot cover a fee increase of " + step);
+        Metrics.Span span = Metrics.span("boost.rbf");
+        out.decreaseValueBy(step);
+        tx.setOutAmt(tx.getOutAmt() - step);
+        tx.setFee(newFee);
+        Metrics.boost(span, "rbf", tx.getHash(), tx);
+    }
+
+    // Builds an unsigned child spending the given output of parent to address, paying childFee
+    public static Transaction cpfpChild(Transaction parent, int output, long childFee, String address)
+    {
+        return cpfpChild(Collections.singletonList(parent), Collections.singletonList(output), childFee, address);
+    }
+
+    // Builds one unsigned child spending outputs.get(i) of parents.get(i) for every i, all paid to
+    // address less childFee. A parent may appear more than once to spend several of its outputs.
+    public static Transaction cpfpChild(List<Transaction> parents, List<Integer> outputs, long childFee, String address)
+    {
+        Metrics.Span span = Metrics.span("boost.cpfp");
+        Transaction child = buildChild(parents, outputs, childFee, address);
+        Metrics.boost(span, "cpfp", parents.get(0).getHash(), child);
+        return child;
+    }
+
+    // Like cpfpChild, with the fee sized from the child's own template so the package pays feeRate
+    public static Transaction cpfpChildAtRate(List<Transaction> parents, List<Integer> outputs, long feeRate, String address)
+    {
+        Metrics.Span span = Metrics.span("boost.cpfp");
+        Transaction template = buildChild(parents, outputs, 0, address);
+        long childFee = packageSolver(parents, feeRate).childFee(CpfpFeeSolver.childSize(template, spentOutputs(parents, outputs)));
+        Transaction child = buildChild(parents, outputs, childFee, address);
+        Metrics.boost(span, "cpfp", parents.get(0).getHash(), child);
+        return child;
+    }
+
+    private static Transaction buildChild(List<Transaction> parents, List<Integer> outputs, long childFee, String address)
+    {
+        if(parents.isEmpty() || parents.size() != outputs.size())
+            throw new IllegalArgumentException("Need one output for every parent");
+        byte[] script = addressToScript(address);
+        if(script == null)
+            throw new IllegalArgumentException("Invalid Address");
+
+        Transaction child = new Transaction();
+        Set<String> spent = new HashSet<String>();
+        long inval = 0;
+        for(int i = 0; i < parents.size(); i++)
+        {
+            Transaction parent = parents.get(i);
+            int output = outputs.get(i);
+            if(output < 0 || output >= parent.getOutputs().size())
+                throw new IllegalArgumentException("No output " + output + " in " + parent.getHash());
+            if(!spent.add(parent.getHash() + ":" + output))
+                throw new IllegalArgumentException("Output " + output + " of " + parent.getHash() + " is spent twice");
+            child.addInput(new TxInput(parent.getHash(), output, new byte[]{(0x00)}, 0xffffffff));
+            inval += parent.getOutputs().get(output).getValue();
+        }
+        long outval = inval - childFee;
+        if(outval <= 0)
+            throw new IllegalArgumentException("Selected outputs cannot cover a fee of " + childFee);
+
+        child.addOutput(new TxOutput(outval, script));
+        child.setOutAmt(outval);
+        child.setFee(childFee);
+        child.setTotalAmtPre(inval);
+        return child;
+    }
+
+    // Returns the output script paying a P2PKH or P2SH address, or null if the address is invalid
+    public static byte[] addressToScript(String address)
+    {
+        if(address == null || !Utils.validateAddress(address))
+            return null;
+        byte[] decoded = Base58.decodeChecked(address);
+        byte version = decoded[0];
+        if(version == ScriptType.P2SH.getAddressVersion())
+        {
+            byte[] script = new byte[23];
+            script[0] = (byte) 0xa9;
+            script[1] = (byte) 0x14;
+            System.arraycopy(decoded, 1, script, 2, 20);
+            script[22] = (byte) 0x87;
+            return script;
+        }
+        if(version == ScriptType.P2PKH.getAddressVersion())
+        {
+            byte[] script = new byte[25];
+            script[0] = (byte) 0x76;
+            script[1] = (byte) 0xa9;
+            script[2] = (byte) 0x14;
+            System.arraycopy(decoded, 1, script, 3, 20);
+            script[23] = (byte) 0x88;
+            script[24] = (byte) 0xac;
+            return script;
+        }
+        return null;
+    }
+
+    // The outputs a child built from parents and outputs spends, in input order
+    public static List<TxOutput> spentOutputs(List<Transaction> parents, List<Integer> outputs)
+    {
+        List<TxOutput> spent = new ArrayList<TxOutput>(parents.size());
+        for(int i = 0; i < parents.size(); i++)
+            spent.add(parents.get(i).getOutputs().get(outputs.get(i)));
+        return spent;
+    }
+
+    private static Collection<Transaction> distinct(List<Transaction> txs)
+    {
+        Map<String, Transaction> byHash = new LinkedHashMap<String, Transaction>();
+        for(Transaction tx : txs)
+            byHash.put(tx.getHash(), tx);
+        return byHash.values();
+    }
+}
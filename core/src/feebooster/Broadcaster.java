@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.bitcoinj.core.*;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.params.MainNetParams;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class Broadcaster implements AutoCloseable {
+
+    // Connections kept open between broadcasts, and how many of them must have a transaction
+    private static final int DEFAULT_POOL_SIZE = 16;
+    private static final int DEFAULT_FAN_OUT = 8;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private static final long MAINTENANCE_PERIOD_SECONDS = 10;
+    private static final long SAVE_PERIOD_SECONDS = 300;
+    private static final long PROPAGATION_WATCH_MINUTES = 10;
+
+    private static Broadcaster shared;
+
+    private final NetworkParameters params;
+    private final Context context;
+    private final BookPeerGroup peerGroup;
+    private final PeerAddressBook addressBook;
+    private ScheduledExecutorService maintenance;
+    private int fanOut = DEFAULT_FAN_OUT;
+    private boolean started = false;
+    private boolean closed = false;
+
+    public Broadcaster(PeerAddressBook addressBook, int poolSize)
+    {
+        this.addressBook = addressBook;
+        params = MainNetParams.get();
+        context = Context.getOrCreate(params);
+        peerGroup = new BookPeerGroup(context, addressBook);
+        peerGroup.setUserAgent("FeeBooster", "1.0");
+        peerGroup.setConnectTimeoutMillis(CONNECT_TIMEOUT_MILLIS);
+
+        // PeerGroup keeps the pool at poolSize and replaces lost peers itself, it gets its candidates
+        // from the address book. Connecting any other way would raise its connection limit each time.
+        peerGroup.setMaxConnections(poolSize);
+        peerGroup.addPeerDiscovery(addressBook);
+
+        // The address book times handshakes and learns gossiped addresses
+        addressBook.attach(peerGroup);
+    }
+
+    // PeerGroup dials whatever comes off its own backoff queue, redials of lost peers included. Here
+    // each dial only claims a free slot and the address book decides who fills it, then times the handshake.
+    // Its peers also tell the trackers which of them a transaction was pushed to, TransactionBroadcast
+    // picks them without saying.
+    private static class BookPeerGroup extends PeerGroup {
+        private final PeerAddressBook addressBook;
+        private final List<PropagationTracker> trackers = new CopyOnWriteArrayList<PropagationTracker>();
+
+        BookPeerGroup(Context context, PeerAddressBook addressBook)
+        {
+            super(context);
+            this.addressBook = addressBook;
+        }
+
+        // Same as PeerGroup's own, which never gets required services or a dependency depth set here
+        @Override
+        protected Peer createPeer(PeerAddress address, VersionMessage ver)
+        {
+            return new Peer(params, ver, address, chain) {
+                @Override
+                public ListenableFuture<?> sendMessage(Message m) {
+                    ListenableFuture<?> sent = super.sendMessage(m);
+                    if(m instanceof Transaction)
+                    {
+                        for(PropagationTracker tracker : trackers)
+                            tracker.sent(this, (Transaction) m);
+                    }
+                    return sent;
+                }
+            };
+        }
+
+        @Override
+        protected Peer connectTo(PeerAddress address, boolean incrementMaxConnections, int connectTimeoutMillis)
+        {
+            InetSocketAddress proposed = address.getSocketAddress();
+            InetSocketAddress next = addressBook.nextDial(proposed);
+            if(next == null)
+                return null;
+            if(!next.equals(proposed))
+                address = new PeerAddress(params, next);
+            addressBook.attemptStarted(next);
+            return super.connectTo(address, incrementMaxConnections, connectTimeoutMillis);
+        }
+    }
+
+    // Process wide broadcaster using the scored peers in peers.dat, seeded from nodes.txt.
+    // Started on first use and stopped on exit.
+    public static synchronized Broadcaster getShared()
+    {
+        if(shared == null)
+        {
+            PeerAddressBook book = PeerAddressBook.load(new File("peers.dat"), new File("nodes.txt"));
+            shared = new Broadcaster(book, DEFAULT_POOL_SIZE);
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    shared.close();
+                }
+            }, "broadcaster-shutdown"));
+        }
+        return shared;
+    }
+
+    public static PropagationTracker broadcastTransaction(byte[] txBytes)
+    {
+        return getShared().broadcast(txBytes);
+    }
+
+    // Begins connecting in the background so the pool is warm by the time a transaction is ready
+    public synchronized void start()
+    {
+        if(closed)
+            throw new IllegalStateException("Broadcaster has been shut down");
+        if(started)
+            return;
+        started = true;
+        peerGroup.start();
+        maintenance = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "broadcaster-maintenance");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        maintenance.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // Handshakes that never finished count against their peer
+                addressBook.expireAttempts(CONNECT_TIMEOUT_MILLIS * 2);
+            }
+        }, MAINTENANCE_PERIOD_SECONDS, MAINTENANCE_PERIOD_SECONDS, TimeUnit.SECONDS);
+        maintenance.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                saveAddressBook();
+            }
+        }, SAVE_PERIOD_SECONDS, SAVE_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void saveAddressBook()
+    {
+        try {
+            addressBook.save();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Number of connected peers a broadcast waits for. bitcoinj pushes the transaction to half of
+    // them and counts it as done once half of the rest announce it back.
+    public synchronized void setFanOut(int fanOut)
+    {
+        if(fanOut < 1)
+            throw new IllegalArgumentException("Fan out must be at least 1");
+        this.fanOut = fanOut;
+    }
+
+    public synchronized int getFanOut()
+    {
+        return fanOut;
+    }
+
+    public int getConnectedPeerCount()
+    {
+        return peerGroup.numConnectedPeers();
+    }
+
+    // Sends the transaction over the warm pool and tracks how it spreads. The tracker's broadcast
+    // future completes when bitcoinj counts the broadcast as done, and it stops listening after
+    // PROPAGATION_WATCH_MINUTES.
+    public PropagationTracker broadcast(byte[] txBytes)
+    {
+        Metrics.Span span = Metrics.span("broadcast");
+        start();
+        // Segwit transactions parse and go out with their witnesses
+        Transaction tx = new Transaction(params, txBytes);
+        final PropagationTracker tracker = new PropagationTracker(tx, context);
+        tracker.attach(peerGroup);
+        peerGroup.trackers.add(tracker);
+        // The peers stay connected afterwards, the pool is kept warm for the next broadcast
+        tracker.setBroadcastFuture(peerGroup.broadcastTransaction(tx, getFanOut(), false).future());
+        maintenance.schedule(new Runnable() {
+            @Override
+            public void run() {
+                peerGroup.trackers.remove(tracker);
+                tracker.detach();
+            }
+        }, PROPAGATION_WATCH_MINUTES, TimeUnit.MINUTES);
+        Metrics.end(span);
+        return tracker;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if(closed)
+            return;
+        closed = true;
+        if(started)
+        {
+            maintenance.shutdownNow();
+            peerGroup.stop();
+            saveAddressBook();
+        }
+    }
+
+    public static List<InetSocketAddress> loadNodes(File file)
+    {
+        List<InetSocketAddress> nodes = new ArrayList<InetSocketAddress>();
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(file));
+            try {
+                String line;
+                while((line = br.readLine()) != null)
+                {
+                    line = line.trim();
+                    int colonIndex = line.lastIndexOf(':');
+                    if(colonIndex <= 0)
+                        continue;
+                    String ip = line.substring(0, colonIndex);
+                    // A bad port skips the line rather than the rest of the file
+                    try {
+                        int port = Integer.parseInt(line.substring(colonIndex + 1));
+                        nodes.add(new InetSocketAddress(ip, port));
+                    } catch (IllegalArgumentException e) {
+                        e.printStackTrace();
+                    }
+                }
+            } finally {
+                br.close();
+            }
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return nodes;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.util.List;
+
+// Works out the fee a CPFP child has to pay so that it and the unconfirmed transactions it drags in
+// reach a target fee rate. Miners take a child together with all its unconfirmed ancestors, so what
+// counts is the combined fee over the combined size. Ancestors already paying the target on their
+// own get mined without help and are left out, so they neither subsidise nor burden the child.
+// Rates are in satoshis per virtual byte.
+public class CpfpFeeSolver {
+
+    private final long targetRate;
+    private long packageSize = 0;
+    private long packageFee = 0;
+    private int members = 0;
+
+    public CpfpFeeSolver(long targetRate)
+    {
+        this.targetRate = targetRate;
+    }
+
+    // Adds a parent or further unconfirmed ancestor. Returns false if it pays the target by itself
+    // and so does not count towards the package.
+    public boolean add(long size, long fee)
+    {
+        if(fee >= targetRate * size)
+            return false;
+        packageSize += size;
+        packageFee += fee;
+        members++;
+        return true;
+    }
+
+    public boolean add(Transaction tx)
+    {
+        return add(tx.getVsize(), tx.getFee());
+    }
+
+    // Smallest fee for a child of the given size that brings the package up to the target rate,
+    // and never less than the target rate for the child alone
+    public long childFee(long childSize)
+    {
+        long needed = targetRate * (packageSize + childSize) - packageFee;
+        return Math.max(needed, targetRate * childSize);
+    }
+
+    // Fee rate the package and a child of the given size and fee pay together
+    public double effectiveRate(long childSize, long childFee)
+    {
+        return (double) (packageFee + childFee) / (packageSize + childSize);
+    }
+
+    // Virtual size of the child once signed, from the unsigned template and the outputs it spends
+    public static long childSize(Transaction child, List<TxOutput> spent)
+    {
+        return SizeEstimator.estimate(child, spent).getVsize();
+    }
+
+    // Virtual size of a signed child spending the given number of compressed P2PKH outputs to one
+    // P2PKH output
+    public static long childSize(int inputs)
+    {
+        SizeEstimator estimator = new SizeEstimator();
+        for(int i = 0; i < inputs; i++)
+            estimator.addInput(SizeEstimator.InputType.P2PKH_COMPRESSED);
+        return estimator.addOutput(25).getVsize();
+    }
+
+    public long getTargetRate()
+    {
+        return targetRate;
+    }
+
+    public long getPackageSize()
+    {
+        return packageSize;
+    }
+
+    public long getPackageFee()
+    {
+        return packageFee;
+    }
+
+    // Number of ancestors that count towards the package
+    public int getMemberCount()
+    {
+        return members;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+// The unsigned encoding of a transaction whose fee is being moved between the fee and its outputs.
+// Only output values change, and they are fixed width, so each change patches 8 bytes and 16 hex
+// digits in place instead of serializing the whole transaction again. The vsize does not depend
+// on the values either, so it is estimated once.
+public class EditableTxView {
+
+    private final Transaction tx;
+    private final byte[] encoding;
+    private final char[] hex;
+    private final int[] valueOffsets;
+    private final long vsize;
+
+    public EditableTxView(Transaction tx)
+    {
+        this.tx = tx;
+        this.encoding = Transaction.serialize(tx, true);
+        this.hex = new char[encoding.length * 2];
+        Hex.encode(encoding, 0, encoding.length, hex, 0);
+        this.vsize = SizeEstimator.estimate(tx).getVsize();
+
+        // Outputs start after the version, the inputs (all 41 bytes when unsigned) and the output count
+        valueOffsets = new int[tx.getOutputs().size()];
+        int pos = 4 + Utils.varIntSize(tx.getInputs().size());
+        for(TxInput input : tx.getInputs())
+            pos += TxInput.serializedSize(input, true);
+        pos += Utils.varIntSize(valueOffsets.length);
+        for(int i = 0; i < valueOffsets.length; i++)
+        {
+            valueOffsets[i] = pos;
+            pos += TxOutput.serializedSize(tx.getOutputs().get(i));
+        }
+    }
+
+    public Transaction getTransaction()
+    {
+        return tx;
+    }
+
+    // Takes step more fee out of the output, a negative step gives it back. The transaction
+    // is kept in step with the encoding.
+    public void moveFee(int output, long step)
+    {
+        if(output < 0 || output >= valueOffsets.length)
+            throw new IllegalArgumentException("No output " + output);
+        TxOutput out = tx.getOutputs().get(output);
+        if(out.getValue() < step)
+            throw new IllegalArgumentException("Output " + output + " cannot cover a fee increase of " + step);
+        if(tx.getFee() + step < 0)
+            throw new IllegalArgumentException("Fee cannot go below zero");
+        out.decreaseValueBy(step);
+        tx.setOutAmt(tx.getOutAmt() - step);
+        tx.setFee(tx.getFee() + step);
+
+        // Little endian value, then its hex digits
+        int offset = valueOffsets[output];
+        long value = out.getValue();
+        for(int i = 0; i < 8; i++)
+            encoding[offset + i] = (byte) (value >>> (i * 8));
+        Hex.encode(encoding, offset, 8, hex, offset * 2);
+    }
+
+    public long getFee()
+    {
+        return tx.getFee();
+    }
+
+    public long getVsize()
+    {
+        return vsize;
+    }
+
+    // Satoshis per vbyte
+    public double getFeeRate()
+    {
+        return (double) tx.getFee() / vsize;
+    }
+
+    public String getHex()
+    {
+        return new String(hex);
+    }
+
+    // Where the output's value starts and ends in getHex, for patching a copy of it
+    public int valueHexStart(int output)
+    {
+        return valueOffsets[output] * 2;
+    }
+
+    public int valueHexEnd(int output)
+    {
+        return valueOffsets[output] * 2 + 16;
+    }
+
+    // The 16 hex digits of the output's value as they appear in getHex
+    public String valueHex(int output)
+    {
+        return new String(hex, valueHexStart(output), 16);
+    }
+
+    public byte[] getBytes()
+    {
+        return encoding.clone();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.io.IOException;
+import java.util.*;
+
+// Works out the fee a transaction paid from the values of the outputs it spends. Parent outputs are
+// kept in a bounded LRU cache keyed by (txid, vout), so inputs spending the same parent, or boosts of
+// related transactions, cost no further lookups. Parents are only fetched from sources that answer
+// them in one batch, anything else is asked for the fee directly.
+public class FeeCalculator {
+
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    private final TransactionSource source;
+    private final Map<OutPoint, Long> prevouts;
+
+    public FeeCalculator(TransactionSource source)
+    {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    public FeeCalculator(TransactionSource source, final int capacity)
+    {
+        this.source = source;
+        this.prevouts = new LinkedHashMap<OutPoint, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<OutPoint, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Returns the total value of the outputs tx spends, or -1 if any of them could not be resolved
+    // or tx has no inputs to resolve. Coinbase inputs never resolve.
+    public long inputValue(Transaction tx) throws IOException
+    {
+        return inputValue(tx, true);
+    }
+
+    private long inputValue(Transaction tx, boolean fetch) throws IOException
+    {
+        List<TxInput> inputs = tx.getInputs();
+        if(inputs.isEmpty())
+            return -1;
+        long[] values = new long[inputs.size()];
+        Set<String> missing = new HashSet<String>();
+        synchronized (prevouts) {
+            for(int i = 0; i < values.length; i++)
+            {
+                TxInput in = inputs.get(i);
+                Long value = prevouts.get(new OutPoint(in.getTxid(), in.getVout()));
+                values[i] = value == null ? -1 : value;
+                if(value == null)
+                    missing.add(in.getTxid());
+            }
+        }
+
+        // Fetch every missing parent at once, then fill in what they provide
+        if(!missing.isEmpty())
+        {
+            if(!fetch)
+                return -1;
+            Map<OutPoint, Long> fetched = fetchParents(missing);
+            for(int i = 0; i < values.length; i++)
+            {
+                if(values[i] >= 0)
+                    continue;
+                TxInput in = inputs.get(i);
+                Long value = fetched.get(new OutPoint(in.getTxid(), in.getVout()));
+                if(value == null)
+                    return -1;
+                values[i] = value;
+            }
+        }
+
+        long total = 0;
+        for(long value : values)
+            total += value;
+        return total;
+    }
+
+    // Returns the fee tx paid, computed from its inputs when they resolve and otherwise as reported
+    // by the source. Returns -1 if neither knows. A txid looked up without its inputs, or one whose
+    // parents would each cost a round trip to a source that cannot batch, goes straight to the source.
+    public long fee(Transaction tx) throws IOException
+    {
+        long in = inputValue(tx, source.isBatching());
+        if(in >= 0)
+            return in - tx.getOutAmt();
+        Long fee = source.getFee(tx.getHash());
+        return fee == null ? -1 : fee;
+    }
+
+    // Fetches the parents of all the transactions that are not cached yet in a single batch, so the
+    // fees of the whole lot can then be computed without further lookups. Does nothing for sources
+    // that cannot batch.
+    public void prefetch(Collection<Transaction> txs) throws IOException
+    {
+        if(!source.isBatching())
+            return;
+        Set<String> missing = new HashSet<String>();
+        synchronized (prevouts) {
+            for(Transaction tx : txs)
+                for(TxInput in : tx.getInputs())
+                    if(!prevouts.containsKey(new OutPoint(in.getTxid(), in.getVout())))
+                        missing.add(in.getTxid());
+        }
+        if(!missing.isEmpty())
+            fetchParents(missing);
+    }
+
+    // Caches the outputs of a transaction we already have, so its children resolve without a lookup
+    public void add(Transaction tx)
+    {
+        Map<OutPoint, Long> outputs = new HashMap<OutPoint, Long>();
+        addOutputs(tx, outputs);
+        synchronized (prevouts) {
+            prevouts.putAll(outputs);
+        }
+    }
+
+    public int cachedOutputs()
+    {
+        synchronized (prevouts) {
+            return prevouts.size();
+        }
+    }
+
+    private Map<OutPoint, Long> fetchParents(Set<String> txids) throws IOException
+    {
+        Map<OutPoint, Long> fetched = new HashMap<OutPoint, Long>();
+        for(byte[] raw : source.getRawTransactions(txids).values())
+        {
+            try {
+                addOutputs(TxDecoder.decode(raw), fetched);
+            } catch (TxDecodeException e) {
+                // A parent we cannot read is the same as one we could not find
+            }
+        }
+        synchronized (prevouts) {
+            prevouts.putAll(fetched);
+        }
+        return fetched;
+    }
+
+    private static void addOutputs(Transaction tx, Map<OutPoint, Long> into)
+    {
+        List<TxOutput> outputs = tx.getOutputs();
+        for(int i = 0; i < outputs.size(); i++)
+            into.put(new OutPoint(tx.getHash(), i), outputs.get(i).getValue());
+    }
+
+    private static final class OutPoint {
+        private final String txid;
+        private final int vout;
+
+        OutPoint(String txid, int vout)
+        {
+            this.txid = txid;
+            this.vout = vout;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof OutPoint))
+                return false;
+            OutPoint other = (OutPoint) o;
+            return vout == other.vout && txid.equals(other.txid);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return txid.hashCode() * 31 + vout;
+        }
+    }
+}
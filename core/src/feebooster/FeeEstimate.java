@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+// Recommended fee rates in satoshis per byte, as published by bitcoinfees.21.co
+public class FeeEstimate {
+
+    private final long fastestFee;
+    private final long halfHourFee;
+    private final long hourFee;
+    private final long fetchedAt;
+
+    public FeeEstimate(long fastestFee, long halfHourFee, long hourFee, long fetchedAt)
+    {
+        this.fastestFee = fastestFee;
+        this.halfHourFee = halfHourFee;
+        this.hourFee = hourFee;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public long getFastestFee()
+    {
+        return fastestFee;
+    }
+
+    public long getHalfHourFee()
+    {
+        return halfHourFee;
+    }
+
+    public long getHourFee()
+    {
+        return hourFee;
+    }
+
+    // When the estimate was fetched, in millis since the epoch, or 0 for the built in fallback
+    public long getFetchedAt()
+    {
+        return fetchedAt;
+    }
+
+    // The built in rates used when no estimate was ever fetched. They are a guess, not a recommendation.
+    public boolean isFallback()
+    {
+        return fetchedAt == 0;
+    }
+
+    public long ageMillis()
+    {
+        return System.currentTimeMillis() - fetchedAt;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "fastest " + fastestFee + ", half hour " + halfHourFee + ", hour " + hourFee + " sat/B"
+                + (isFallback() ? " (built in fallback)" : "");
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.io.*;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// Process wide cache of the fee estimate. Readers always get an answer straight away: the last good
+// estimate, even if it is past its TTL, while a single background refresh fetches a new one. The last
+// good estimate is persisted so a fresh start has something to serve before the API answers.
+public class FeeEstimateCache {
+
+    private static final String FEE_API = "http://bitcoinfees.21.co/api/v1/fees/recommended";
+    private static final long DEFAULT_TTL_SECONDS = 120;
+
+    // Used only if nothing has ever been fetched or persisted, FeeEstimate.isFallback() tells it apart
+    private static final FeeEstimate FALLBACK = new FeeEstimate(100, 80, 60, 0);
+
+    private static FeeEstimateCache shared;
+
+    private final File store;
+    private final long ttlMillis;
+    private final ScheduledExecutorService refresher;
+    private volatile FeeEstimate current;
+    private CompletableFuture<FeeEstimate> inFlight;
+
+    public FeeEstimateCache(File store, long ttl, TimeUnit unit)
+    {
+        this.store = store;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "fee-estimate-refresh");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.current = load();
+    }
+
+    // TTL in seconds comes from the feebooster.feeTtlSeconds system property
+    public static synchronized FeeEstimateCache getShared()
+    {
+        if(shared == null)
+        {
+            long ttl = Long.getLong("feebooster.feeTtlSeconds", DEFAULT_TTL_SECONDS);
+            shared = new FeeEstimateCache(new File("fees.properties"), ttl, TimeUnit.SECONDS);
+            shared.start();
+        }
+        return shared;
+    }
+
+    // Refreshes every TTL from now on, so reads normally find a fresh value
+    public void start()
+    {
+        refresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, 0, ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop()
+    {
+        refresher.shutdownNow();
+    }
+
+    // The newest estimate available without waiting. Kicks off a refresh if it is past its TTL.
+    public FeeEstimate get()
+    {
+        FeeEstimate estimate = current;
+        if(estimate.ageMillis() > ttlMillis)
+            refresh();
+        return estimate;
+    }
+
+    // Like get(), but if there has never been a real estimate waits for the first fetch. If that fails
+    // it completes with the built in rates, which callers must check for with isFallback().
+    public CompletableFuture<FeeEstimate> getAsync()
+    {
+        FeeEstimate estimate = get();
+        if(estimate != FALLBACK)
+            return CompletableFuture.completedFuture(estimate);
+        return refresh().exceptionally(e -> FALLBACK);
+    }
+
+    public boolean isStale()
+    {
+        return current.ageMillis() > ttlMillis;
+    }
+
+    // Starts a fetch unless one is already running. Callers share the same future.
+    public synchronized CompletableFuture<FeeEstimate> refresh()
+    {
+        if(inFlight != null)
+            return inFlight;
+        CompletableFuture<FeeEstimate> fetch = CompletableFuture.supplyAsync(this::fetch, refresher);
+        inFlight = fetch;
+        fetch.whenComplete((estimate, error) -> {
+            synchronized (FeeEstimateCache.this) {
+                inFlight = null;
+            }
+            if(error == null)
+            {
+                current = estimate;
+                save(estimate);
+            }
+        });
+        return fetch;
+    }
+
+    private FeeEstimate fetch()
+    {
+        Map<String, Object> fields;
+        try {
+            fields = ApiClient.getFields(FEE_API, "fastestFee", "halfHourFee", "hourFee");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Fee estimate API failed", e);
+        }
+        if(!(fields.get("fastestFee") instanceof Number))
+            throw new IllegalStateException("Fee estimate API failed");
+        long fastestFee = JsonFieldReader.getLong(fields, "fastestFee");
+        long halfHourFee = fields.get("halfHourFee") instanceof Number ? JsonFieldReader.getLong(fields, "halfHourFee") : fastestFee;
+        long hourFee = fields.get("hourFee") instanceof Number ? JsonFieldReader.getLong(fields, "hourFee") : fastestFee;
+        return new FeeEstimate(fastestFee, halfHourFee, hourFee, System.currentTimeMillis());
+    }
+
+    private FeeEstimate load()
+    {
+        if(!store.exists())
+            return FALLBACK;
+        Properties props = new Properties();
+        try {
+            InputStream in = new FileInputStream(store);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+            return new FeeEstimate(Long.parseLong(props.getProperty("fastestFee")),
+                    Long.parseLong(props.getProperty("halfHourFee")),
+                    Long.parseLong(props.getProperty("hourFee")),
+                    Long.parseLong(props.getProperty("fetchedAt")));
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            // Missing or malformed entry
+            e.printStackTrace();
+        }
+        return FALLBACK;
+    }
+
+    private void save(FeeEstimate estimate)
+    {
+        Properties props = new Properties();
+        props.setProperty("fastestFee", Long.toString(estimate.getFastestFee()));
+        props.setProperty("halfHourFee", Long.toString(estimate.getHalfHourFee()));
+        props.setProperty("hourFee", Long.toString(estimate.getHourFee()));
+        props.setProperty("fetchedAt", Long.toString(estimate.getFetchedAt()));
+        try {
+            OutputStream out = new FileOutputStream(store);
+            try {
+                props.store(out, "Last fee estimate fetched by FeeBooster");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.bouncycastle.crypto.digests.RIPEMD160Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class Hashing {
+
+    // Batches are split until a piece holds at most this many items or bytes
+    private static final int BATCH_ITEMS = 64;
+    private static final int BATCH_BYTES = 256 * 1024;
+
+    private static final ThreadLocal<Digests> DIGESTS = new ThreadLocal<Digests>() {
+        @Override
+        protected Digests initialValue() {
+            return new Digests();
+        }
+    };
+
+    public static byte[] doubleSha256(byte[] data)
+    {
+        return doubleSha256(data, 0, data.length);
+    }
+
+    public static byte[] doubleSha256(byte[] data, int offset, int length)
+    {
+        byte[] out = new byte[32];
+        doubleSha256(data, offset, length, out, 0);
+        return out;
+    }
+
+    // SHA256(SHA256(data)) written to out at outOffset
+    public static void doubleSha256(byte[] data, int offset, int length, byte[] out, int outOffset)
+    {
+        Digests d = DIGESTS.get();
+        try {
+            d.sha256.update(data, offset, length);
+            d.finishDouble(out, outOffset);
+        } finally {
+            d.reset();
+        }
+    }
+
+    // Hashes the bytes between position and limit of a heap or direct buffer without moving its position
+    public static void doubleSha256(ByteBuffer data, byte[] out, int outOffset)
+    {
+        Digests d = DIGESTS.get();
+        try {
+            update(d, data);
+            d.finishDouble(out, outOffset);
+        } finally {
+            d.reset();
+        }
+    }
+
+    // Hashes several buffers as if they were one, e.g. a segwit transaction without its witnesses
+    public static void doubleSha256(ByteBuffer[] parts, byte[] out, int outOffset)
+    {
+        Digests d = DIGESTS.get();
+        try {
+            for (ByteBuffer part : parts)
+                update(d, part);
+            d.finishDouble(out, outOffset);
+        } finally {
+            d.reset();
+        }
+    }
+
+    private static void update(Digests d, ByteBuffer data)
+    {
+        if (data.hasArray()) {
+            d.sha256.update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        } else {
+            ByteBuffer src = data.duplicate();
+            while (src.hasRemaining()) {
+                int n = Math.min(d.bounce.length, src.remaining());
+                src.get(d.bounce, 0, n);
+                d.sha256.update(d.bounce, 0, n);
+            }
+        }
+    }
+
+    // RIPEMD160(SHA256(data)), the hash behind P2PKH and P2SH addresses
+    public static byte[] hash160(byte[] data, int offset, int length)
+    {
+        Digests d = DIGESTS.get();
+        try {
+            d.sha256.update(data, offset, length);
+            d.sha256.doFinal(d.scratch, 0);
+            d.ripemd160.update(d.scratch, 0, 32);
+            byte[] out = new byte[20];
+            d.ripemd160.doFinal(out, 0);
+            return out;
+        } finally {
+            d.reset();
+        }
+    }
+
+    // Double SHA256 of every item, e.g. the txids of a bulk import. Large batches are split
+    // across the common fork join pool.
+    public static byte[][] doubleSha256Batch(List<byte[]> items)
+    {
+        return doubleSha256Batch(items.toArray(new byte[items.size()][]));
+    }
+
+    public static byte[][] doubleSha256Batch(byte[][] items)
+    {
+        byte[][] hashes = new byte[items.length][];
+        BatchTask task = new BatchTask(items, hashes, 0, items.length);
+        if (items.length <= BATCH_ITEMS)
+            task.compute();
+        else
+            ForkJoinPool.commonPool().invoke(task);
+        return hashes;
+    }
+
+    private static class BatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[][] items;
+        private final byte[][] hashes;
+        private final int from;
+        private final int to;
+
+        BatchTask(byte[][] items, byte[][] hashes, int from, int to)
+        {
+            this.items = items;
+            this.hashes = hashes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1 && (to - from > BATCH_ITEMS || bytes() > BATCH_BYTES)) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BatchTask(items, hashes, from, mid), new BatchTask(items, hashes, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++)
+                hashes[i] = doubleSha256(items[i]);
+        }
+
+        private long bytes()
+        {
+            long total = 0;
+            for (int i = from; i < to; i++)
+                total += items[i].length;
+            return total;
+        }
+    }
+
+    // Per thread digests, reset after every use even when a caller's buffer throws partway through
+    private static class Digests {
+
+        final SHA256Digest sha256 = new SHA256Digest();
+        final RIPEMD160Digest ripemd160 = new RIPEMD160Digest();
+        final byte[] scratch = new byte[32];
+        final byte[] bounce = new byte[4096];
+
+        void finishDouble(byte[] out, int outOffset)
+        {
+            sha256.doFinal(scratch, 0);
+            sha256.update(scratch, 0, 32);
+            sha256.doFinal(out, outOffset);
+        }
+
+        void reset()
+        {
+            sha256.reset();
+            ripemd160.reset();
+        }
+    }
+}
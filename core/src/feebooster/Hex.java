@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class Hex {
+
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++)
+            VALUES['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    // True if s is non-empty and made only of hex digits
+    public static boolean isHex(CharSequence s)
+    {
+        int len = s.length();
+        if (len == 0)
+            return false;
+        for (int i = 0; i < len; i++)
+            if (value(s.charAt(i)) < 0)
+                return false;
+        return true;
+    }
+
+    public static byte[] decode(CharSequence s)
+    {
+        byte[] out = new byte[checkLength(s, 0, s.length())];
+        decode(s, 0, s.length(), out, 0);
+        return out;
+    }
+
+    // Validates and decodes the characters in [start, end) into out, returning the number of bytes written.
+    // Throws IllegalArgumentException at the first character that is not a hex digit.
+    public static int decode(CharSequence s, int start, int end, byte[] out, int outOffset)
+    {
+        int len = checkLength(s, start, end);
+        for (int i = start, o = outOffset; i < end; i += 2, o++)
+            out[o] = decodeByte(s, i);
+        return len;
+    }
+
+    public static int decode(CharSequence s, int start, int end, ByteBuffer out)
+    {
+        int len = checkLength(s, start, end);
+        for (int i = start; i < end; i += 2)
+            out.put(decodeByte(s, i));
+        return len;
+    }
+
+    public static String encode(byte[] bytes)
+    {
+        char[] hexChars = new char[bytes.length * 2];
+        encode(bytes, 0, bytes.length, hexChars, 0);
+        return new String(hexChars);
+    }
+
+    // Writes 2 * length characters into out starting at outOffset
+    public static void encode(byte[] bytes, int offset, int length, char[] out, int outOffset)
+    {
+        for (int j = 0; j < length; j++) {
+            int v = bytes[offset + j] & 0xFF;
+            out[outOffset + j * 2] = DIGITS[v >>> 4];
+            out[outOffset + j * 2 + 1] = DIGITS[v & 0x0F];
+        }
+    }
+
+    // Appends to a builder that can be cleared and reused between calls
+    public static StringBuilder encode(byte[] bytes, int offset, int length, StringBuilder out)
+    {
+        out.ensureCapacity(out.length() + length * 2);
+        for (int j = 0; j < length; j++) {
+            int v = bytes[offset + j] & 0xFF;
+            out.append(DIGITS[v >>> 4]);
+            out.append(DIGITS[v & 0x0F]);
+        }
+        return out;
+    }
+
+    private static int checkLength(CharSequence s, int start, int end)
+    {
+        int len = end - start;
+        if (len == 0 || len % 2 != 0)
+            throw new IllegalArgumentException("Hex string must have an even, non-zero length, got " + len);
+        return len / 2;
+    }
+
+    private static byte decodeByte(CharSequence s, int i)
+    {
+        int hi = value(s.charAt(i));
+        int lo = value(s.charAt(i + 1));
+        if ((hi | lo) < 0)
+            throw new IllegalArgumentException("Invalid hex character at index " + (hi < 0 ? i : i + 1));
+        return (byte) ((hi << 4) | lo);
+    }
+
+    private static int value(char c)
+    {
+        return c < 128 ? VALUES[c] : -1;
+    }
+}
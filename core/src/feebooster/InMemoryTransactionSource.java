@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Answers lookups from transactions put into it, for tests and for running without a network.
+// Txids are matched without regard to case.
+public class InMemoryTransactionSource implements TransactionSource {
+
+    private final Map<String, byte[]> rawTransactions = new ConcurrentHashMap<String, byte[]>();
+    private final Map<String, Long> fees = new ConcurrentHashMap<String, Long>();
+    private final Map<String, Status> statuses = new ConcurrentHashMap<String, Status>();
+
+    // Stores the raw transaction under the txid it hashes to and returns that txid
+    public String put(byte[] rawTx) throws TxDecodeException
+    {
+        String txid = TxDecoder.decode(rawTx).getHash().toUpperCase();
+        rawTransactions.put(txid, rawTx.clone());
+        return txid;
+    }
+
+    public String put(byte[] rawTx, long fee) throws TxDecodeException
+    {
+        String txid = put(rawTx);
+        fees.put(txid, fee);
+        return txid;
+    }
+
+    public void putFee(String txid, long fee)
+    {
+        fees.put(txid.toUpperCase(), fee);
+    }
+
+    // Transactions put in are in the mempool until told otherwise
+    public void setStatus(String txid, Status status)
+    {
+        statuses.put(txid.toUpperCase(), status);
+    }
+
+    public void clear()
+    {
+        rawTransactions.clear();
+        fees.clear();
+        statuses.clear();
+    }
+
+    // Lookups never leave the process
+    @Override
+    public boolean isBatching()
+    {
+        return true;
+    }
+
+    @Override
+    public byte[] getRawTransaction(String txid)
+    {
+        byte[] raw = rawTransactions.get(txid.toUpperCase());
+        return raw == null ? null : raw.clone();
+    }
+
+    @Override
+    public Long getFee(String txid)
+    {
+        return fees.get(txid.toUpperCase());
+    }
+
+    @Override
+    public Status getStatus(String txid)
+    {
+        Status status = statuses.get(txid.toUpperCase());
+        if(status != null)
+            return status;
+        return rawTransactions.containsKey(txid.toUpperCase()) ? Status.MEMPOOL : Status.MISSING;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Pulls a few top level fields out of a JSON object as it streams in. Everything else is skipped
+// without being built, and reading stops as soon as all requested fields have been seen.
+// Numbers come back as Long or Double, strings as String, true/false as Boolean, null as null,
+// and nested objects or arrays as their raw JSON text.
+public class JsonFieldReader {
+
+    private final Reader in;
+    private int peeked = -2;
+
+    private JsonFieldReader(Reader in)
+    {
+        this.in = in;
+    }
+
+    public static Map<String, Object> read(Reader in, String... fields) throws IOException
+    {
+        return read(in, new HashSet<String>(Arrays.asList(fields)));
+    }
+
+    public static Map<String, Object> read(Reader in, Set<String> fields) throws IOException
+    {
+        return new JsonFieldReader(in).readObject(fields);
+    }
+
+    public static long getLong(Map<String, Object> fields, String name)
+    {
+        Object value = fields.get(name);
+        if(!(value instanceof Number))
+            throw new IllegalStateException("Field " + name + " is missing or not a number");
+        return ((Number) value).longValue();
+    }
+
+    private Map<String, Object> readObject(Set<String> fields) throws IOException
+    {
+        Map<String, Object> result = new HashMap<String, Object>();
+        expect('{');
+        if(peekToken() == '}')
+            return result;
+        while(true)
+        {
+            String key = readString();
+            expect(':');
+            if(fields.contains(key))
+            {
+                result.put(key, readValue());
+                if(result.size() == fields.size())
+                    return result;
+            }
+            else
+            {
+                skipValue(null);
+            }
+            int c = nextToken();
+            if(c == '}')
+                return result;
+            if(c != ',')
+                throw error("Expected , or }");
+        }
+    }
+
+    private Object readValue() throws IOException
+    {
+        int c = peekToken();
+        if(c == '"')
+            return readString();
+        if(c == '{' || c == '[')
+        {
+            StringBuilder raw = new StringBuilder();
+            skipValue(raw);
+            return raw.toString();
+        }
+        if(c == 't' || c == 'f' || c == 'n')
+        {
+            String word = readWord();
+            if(word.equals("true"))
+                return Boolean.TRUE;
+            if(word.equals("false"))
+                return Boolean.FALSE;
+            if(word.equals("null"))
+                return null;
+            throw error("Unexpected " + word);
+        }
+        String number = readWord();
+        try {
+            if(number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0)
+                return Long.parseLong(number);
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("Bad number " + number);
+        }
+    }
+
+    // Skips one value, copying its text into raw if given
+    private void skipValue(StringBuilder raw) throws IOException
+    {
+        int c = peekToken();
+        if(c == '"')
+        {
+            String s = readString();
+            if(raw != null)
+                appendQuoted(raw, s);
+            return;
+        }
+        if(c != '{' && c != '[')
+        {
+            String word = readWord();
+            if(raw != null)
+                raw.append(word);
+            return;
+        }
+
+        // Walk nested containers by depth, only strings need care
+        int depth = 0;
+        do
+        {
+            c = nextToken();
+            if(c == '"')
+            {
+                unread(c);
+                String s = readString();
+                if(raw != null)
+                    appendQuoted(raw, s);
+                continue;
+            }
+            if(c < 0)
+                throw error("Unexpected end of JSON");
+            if(c == '{' || c == '[')
+                depth++;
+            else if(c == '}' || c == ']')
+                depth--;
+            if(raw != null)
+                raw.append((char) c);
+        }
+        while(depth > 0);
+    }
+
+    private String readString() throws IOException
+    {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while(true)
+        {
+            int c = read();
+            if(c < 0)
+                throw error("Unterminated string");
+            if(c == '"')
+                return sb.toString();
+            if(c == '\\')
+            {
+                int e = read();
+                switch(e)
+                {
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        char[] hex = new char[4];
+                        for(int i = 0; i < 4; i++)
+                        {
+                            int h = read();
+                            if(h < 0)
+                                throw error("Unterminated escape");
+                            hex[i] = (char) h;
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(new String(hex), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("Bad unicode escape");
+                        }
+                        break;
+                    default:
+                        if(e < 0)
+                            throw error("Unterminated escape");
+                        sb.append((char) e);
+                }
+            }
+            else
+            {
+                sb.append((char) c);
+            }
+        }
+    }
+
+    // A bare literal: number, true, false or null
+    private String readWord() throws IOException
+    {
+        peekToken();
+        StringBuilder sb = new StringBuilder();
+        while(true)
+        {
+            int c = read();
+            if(c < 0 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c))
+            {
+                unread(c);
+                break;
+            }
+            sb.append((char) c);
+        }
+        if(sb.length() == 0)
+            throw error("Expected a value");
+        return sb.toString();
+    }
+
+    private static void appendQuoted(StringBuilder raw, String s)
+    {
+        raw.append('"');
+        for(int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\')
+                raw.append('\\').append(c);
+            else if(c < 0x20)
+                raw.append(String.format("\\u%04x", (int) c));
+            else
+                raw.append(c);
+        }
+        raw.append('"');
+    }
+
+    private void expect(char expected) throws IOException
+    {
+        int c = nextToken();
+        if(c != expected)
+            throw error("Expected " + expected);
+    }
+
+    private int peekToken() throws IOException
+    {
+        int c = nextToken();
+        unread(c);
+        return c;
+    }
+
+    private int nextToken() throws IOException
+    {
+        int c;
+        do
+        {
+            c = read();
+        }
+        while(c >= 0 && Character.isWhitespace(c));
+        return c;
+    }
+
+    private int read() throws IOException
+    {
+        if(peeked != -2)
+        {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private void unread(int c)
+    {
+        peeked = c;
+    }
+
+    private IOException error(String message)
+    {
+        return new IOException("Malformed JSON: " + message);
+    }
+}
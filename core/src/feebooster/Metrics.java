@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histograms and counters for each stage, switched on with -Dfeebooster.metrics=true.
+// Switched off, span returns null before touching the clock and everything else returns straight
+// away, and as ENABLED is a constant the JIT drops the checks altogether.
+// Readable over JMX as FeeBooster:type=Metrics, boosts are also JFR events (feebooster.Boost).
+public class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("feebooster.metrics");
+
+    // Keyed series, such as one per peer, beyond this many share one ".other" series per stage
+    private static final int MAX_SERIES = 1000;
+
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+
+    // Per thread allocation counters where the JVM has them
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+    private static final boolean JFR = ENABLED && hasClass("jdk.jfr.Event");
+
+    static {
+        if(ENABLED)
+        {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("FeeBooster:type=Metrics"));
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Timing of one pass through a stage, ended on the thread that started it to count allocations
+    public static class Span {
+        final String name;
+        final long startNanos;
+        final Thread thread;
+        final long startAllocated;
+
+        Span(String name)
+        {
+            this.name = name;
+            this.thread = Thread.currentThread();
+            this.startAllocated = allocatedBytes(thread);
+            this.startNanos = System.nanoTime();
+        }
+
+        public long elapsedNanos()
+        {
+            return System.nanoTime() - startNanos;
+        }
+    }
+
+    // Power of two buckets of nanoseconds, so recording is one add and never allocates
+    public static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos)
+        {
+            if(nanos < 0)
+                nanos = 0;
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+            count.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        public long getCount()
+        {
+            return count.sum();
+        }
+
+        public long getMeanNanos()
+        {
+            long n = count.sum();
+            return n == 0 ? 0 : sum.sum() / n;
+        }
+
+        public long getMaxNanos()
+        {
+            return max.get();
+        }
+
+        // Upper bound of the bucket holding the quantile, at most twice the real value
+        public long getQuantileNanos(double quantile)
+        {
+            long n = count.sum();
+            if(n == 0)
+                return 0;
+            long rank = (long) Math.ceil(quantile * n);
+            long seen = 0;
+            for(int b = 0; b < 64; b++)
+            {
+                seen += buckets.get(b);
+                if(seen >= rank)
+                    return Math.min(b == 63 ? Long.MAX_VALUE : (1L << (b + 1)) - 1, getMaxNanos());
+            }
+            return getMaxNanos();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms", getCount(),
+                    getMeanNanos() / 1e6, getQuantileNanos(0.5) / 1e6, getQuantileNanos(0.99) / 1e6, getMaxNanos() / 1e6);
+        }
+    }
+
+    // Returns null when switched off, which end and boost accept
+    public static Span span(String name)
+    {
+        return ENABLED ? new Span(name) : null;
+    }
+
+    // A series per key within the stage, such as per host or per peer
+    public static Span span(String stage, String key)
+    {
+        return ENABLED ? new Span(seriesName(stage, key)) : null;
+    }
+
+    public static void end(Span span)
+    {
+        if(span == null)
+            return;
+        histogram(span.name).record(span.elapsedNanos());
+        if(span.thread == Thread.currentThread())
+        {
+            long allocated = allocatedBytes(span.thread);
+            if(allocated >= 0 && span.startAllocated >= 0)
+                count(span.name + ".allocatedBytes", allocated - span.startAllocated);
+        }
+    }
+
+    // Ends the span and counts a failure of its stage
+    public static void fail(Span span)
+    {
+        if(span == null)
+            return;
+        end(span);
+        count(span.name + ".errors", 1);
+    }
+
+    // For durations measured elsewhere, such as handshakes timed by the address book
+    public static void record(String stage, String key, long nanos)
+    {
+        if(ENABLED)
+            histogram(seriesName(stage, key)).record(nanos);
+    }
+
+    public static void count(String name, long n)
+    {
+        if(!ENABLED)
+            return;
+        LongAdder counter = counters.get(name);
+        if(counter == null)
+            counter = counters.computeIfAbsent(name, k -> new LongAdder());
+        counter.add(n);
+    }
+
+    // Ends the span that built a replacement or child and reports the boost, to JFR as well
+    public static void boost(Span span, String kind, String txid, Transaction boosted)
+    {
+        if(span == null)
+            return;
+        long nanos = span.elapsedNanos();
+        end(span);
+        count("boost." + kind, 1);
+        if(JFR)
+            BoostEvent.commit(kind, txid, boosted.getFee(), SizeEstimator.estimate(boosted).getVsize(), nanos);
+    }
+
+    public static Histogram histogram(String name)
+    {
+        Histogram histogram = histograms.get(name);
+        if(histogram == null)
+            histogram = histograms.computeIfAbsent(name, k -> new Histogram());
+        return histogram;
+    }
+
+    public static long getCount(String name)
+    {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    // One line per series, sorted by name
+    public static String report()
+    {
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String, Histogram> e : new TreeMap<String, Histogram>(histograms).entrySet())
+            sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+        for(Map.Entry<String, Long> e : counterValues().entrySet())
+            sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+        return sb.toString();
+    }
+
+    public static void reset()
+    {
+        histograms.clear();
+        counters.clear();
+    }
+
+    private static Map<String, Long> counterValues()
+    {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for(Map.Entry<String, LongAdder> e : counters.entrySet())
+            values.put(e.getKey(), e.getValue().sum());
+        return values;
+    }
+
+    private static String seriesName(String stage, String key)
+    {
+        String name = stage + "." + key;
+        if(histograms.size() >= MAX_SERIES && !histograms.containsKey(name))
+            return stage + ".other";
+        return name;
+    }
+
+    private static long allocatedBytes(Thread thread)
+    {
+        if(ALLOCATIONS == null)
+            return -1;
+        return ALLOCATIONS.getThreadAllocatedBytes(thread.getId());
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean()
+    {
+        if(!ENABLED)
+            return null;
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if(bean instanceof com.sun.management.ThreadMXBean)
+            {
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if(sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                    return sunBean;
+            }
+        } catch (LinkageError e) {
+            // Not a HotSpot JVM
+        }
+        return null;
+    }
+
+    private static boolean hasClass(String name)
+    {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    private static class Bean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters()
+        {
+            return counterValues();
+        }
+
+        @Override
+        public Map<String, String> getHistograms()
+        {
+            Map<String, String> values = new TreeMap<String, String>();
+            for(Map.Entry<String, Histogram> e : histograms.entrySet())
+                values.put(e.getKey(), e.getValue().toString());
+            return values;
+        }
+
+        @Override
+        public String getReport()
+        {
+            return report();
+        }
+
+        @Override
+        public void reset()
+        {
+            Metrics.reset();
+        }
+    }
+}
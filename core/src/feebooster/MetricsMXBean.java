@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.util.Map;
+
+// What Metrics shows over JMX, as FeeBooster:type=Metrics
+public interface MetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    // Count, mean, median, p99 and max per series
+    Map<String, String> getHistograms();
+
+    String getReport();
+
+    void reset();
+}
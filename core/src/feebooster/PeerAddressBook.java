@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.bitcoinj.core.AddressMessage;
+import org.bitcoinj.core.Message;
+import org.bitcoinj.core.Peer;
+import org.bitcoinj.core.PeerAddress;
+import org.bitcoinj.core.PeerGroup;
+import org.bitcoinj.core.listeners.PeerConnectedEventListener;
+import org.bitcoinj.core.listeners.PeerDisconnectedEventListener;
+import org.bitcoinj.core.listeners.PreMessageReceivedEventListener;
+import org.bitcoinj.net.discovery.PeerDiscovery;
+import org.bitcoinj.utils.Threading;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class PeerAddressBook implements PeerDiscovery {
+
+    private static final int MAGIC = 0x46425042;
+    private static final int FILE_VERSION = 1;
+
+    // Caps so a chatty peer cannot grow the book without bound
+    private static final int MAX_ENTRIES = 4096;
+    private static final int MAX_ADDRS_PER_MESSAGE = 1000;
+
+    // Untested peers sort as if they had this latency, after fast known peers but before slow ones
+    private static final int UNKNOWN_LATENCY_MILLIS = 1500;
+
+    // A peer that failed this many times in a row sits out for a while, longer for each further failure
+    private static final int FAILURE_STREAK_LIMIT = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 10 * 60 * 1000;
+
+    private final File scoreFile;
+    private final Map<InetSocketAddress, Entry> entries = new LinkedHashMap<InetSocketAddress, Entry>();
+
+    private static class Entry {
+        final InetSocketAddress address;
+        int latencyMillis = -1;
+        int successes;
+        int failures;
+        int failureStreak;
+        long lastSeen;
+        long attemptStarted;
+        boolean connected;
+        // Handed to PeerGroup, which keeps backoff state for every address it may dial
+        boolean offered;
+
+        Entry(InetSocketAddress address)
+        {
+            this.address = address;
+        }
+
+        int sortLatency()
+        {
+            int latency = latencyMillis < 0 ? UNKNOWN_LATENCY_MILLIS : latencyMillis;
+            // Flaky peers rank behind steady ones with the same latency
+            return latency + latency * failures / (successes + 1);
+        }
+
+        boolean healthy(long now)
+        {
+            if(failureStreak < FAILURE_STREAK_LIMIT)
+                return true;
+            return now - lastSeen > RETRY_BACKOFF_MILLIS * (failureStreak - FAILURE_STREAK_LIMIT + 1);
+        }
+    }
+
+    public PeerAddressBook(File scoreFile)
+    {
+        this.scoreFile = scoreFile;
+    }
+
+    // Reads the score file, or seeds a fresh book from a plain ip:port list if there is none yet
+    public static PeerAddressBook load(File scoreFile, File seedFile)
+    {
+        PeerAddressBook book = new PeerAddressBook(scoreFile);
+        if(scoreFile.exists())
+        {
+            try {
+                book.read();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if(book.size() == 0)
+        {
+            for(InetSocketAddress node : Broadcaster.loadNodes(seedFile))
+                book.add(node);
+        }
+        return book;
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public synchronized void add(InetSocketAddress address)
+    {
+        if(entries.containsKey(address))
+            return;
+        if(entries.size() >= MAX_ENTRIES && !evictWorst())
+            return;
+        entries.put(address, new Entry(address));
+    }
+
+    // Healthy peers that are not connected or being connected to, fastest first
+    private List<Entry> candidates(boolean offeredOnly)
+    {
+        long now = System.currentTimeMillis();
+        List<Entry> candidates = new ArrayList<Entry>();
+        for(Entry e : entries.values())
+        {
+            if(!e.connected && e.attemptStarted == 0 && e.healthy(now) && (e.offered || !offeredOnly))
+                candidates.add(e);
+        }
+        Collections.sort(candidates, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return Integer.compare(a.sortLatency(), b.sortLatency());
+            }
+        });
+        return candidates;
+    }
+
+    // What to dial when PeerGroup picks proposed off its backoff queue: the fastest candidate it
+    // already knows, so the ranking decides redials too. proposed itself if there is none and the
+    // book has never heard of it, null to skip the dial.
+    public synchronized InetSocketAddress nextDial(InetSocketAddress proposed)
+    {
+        List<Entry> candidates = candidates(true);
+        if(!candidates.isEmpty())
+            return candidates.get(0).address;
+        return entries.containsKey(proposed) ? null : proposed;
+    }
+
+    // PeerGroup asks whenever it has no address left to try, it gets every healthy one, fastest first
+    @Override
+    public synchronized InetSocketAddress[] getPeers(long services, long timeoutValue, TimeUnit timeoutUnit)
+    {
+        List<Entry> candidates = candidates(false);
+        InetSocketAddress[] peers = new InetSocketAddress[candidates.size()];
+        for(int i = 0; i < peers.length; i++)
+        {
+            candidates.get(i).offered = true;
+            peers[i] = candidates.get(i).address;
+        }
+        return peers;
+    }
+
+    @Override
+    public void shutdown()
+    {
+    }
+
+    // Must be called right before connecting so the handshake can be timed
+    public synchronized void attemptStarted(InetSocketAddress address)
+    {
+        add(address);
+        Entry e = entries.get(address);
+        if(e != null)
+            e.attemptStarted = System.currentTimeMillis();
+    }
+
+    public synchronized void connected(InetSocketAddress address)
+    {
+        Entry e = entries.get(address);
+        if(e == null || e.connected)
+            return;
+        long now = System.currentTimeMillis();
+        if(e.attemptStarted != 0)
+        {
+            int latency = (int) Math.min(Integer.MAX_VALUE, now - e.attemptStarted);
+            if(Metrics.ENABLED)
+                Metrics.record("broadcast.connect", address.toString(), latency * 1000000L);
+            // Smooth so that one slow handshake does not bury a good peer
+            e.latencyMillis = e.latencyMillis < 0 ? latency : (e.latencyMillis * 7 + latency * 3) / 10;
+        }
+        e.attemptStarted = 0;
+        e.connected = true;
+        e.successes++;
+        e.failureStreak = 0;
+        e.lastSeen = now;
+    }
+
+    public synchronized void disconnected(InetSocketAddress address)
+    {
+        Entry e = entries.get(address);
+        if(e == null)
+            return;
+        if(!e.connected && e.attemptStarted != 0)
+            failed(e);
+        e.connected = false;
+        e.attemptStarted = 0;
+    }
+
+    // Counts attempts that have been pending longer than the timeout as failures, returns how many
+    public synchronized int expireAttempts(long timeoutMillis)
+    {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for(Entry e : entries.values())
+        {
+            if(!e.connected && e.attemptStarted != 0 && now - e.attemptStarted > timeoutMillis)
+            {
+                failed(e);
+                e.attemptStarted = 0;
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    private void failed(Entry e)
+    {
+        e.failures++;
+        e.failureStreak++;
+        e.lastSeen = System.currentTimeMillis();
+    }
+
+    private boolean evictWorst()
+    {
+        Entry worst = null;
+        for(Entry e : entries.values())
+        {
+            if(e.connected || e.attemptStarted != 0)
+                continue;
+            if(worst == null || e.failureStreak > worst.failureStreak
+                    || (e.failureStreak == worst.failureStreak && e.sortLatency() > worst.sortLatency()))
+                worst = e;
+        }
+        if(worst == null)
+            return false;
+        entries.remove(worst.address);
+        return true;
+    }
+
+    // Keeps the book up to date from a peer group's connections and the addr messages its peers gossip
+    public void attach(PeerGroup peerGroup)
+    {
+        peerGroup.addConnectedEventListener(Threading.SAME_THREAD, new PeerConnectedEventListener() {
+            @Override
+            public void onPeerConnected(Peer peer, int peerCount) {
+                connected(peer.getAddress().getSocketAddress());
+            }
+        });
+        peerGroup.addDisconnectedEventListener(Threading.SAME_THREAD, new PeerDisconnectedEventListener() {
+            @Override
+            public void onPeerDisconnected(Peer peer, int peerCount) {
+                disconnected(peer.getAddress().getSocketAddress());
+            }
+        });
+        peerGroup.addPreMessageReceivedEventListener(Threading.SAME_THREAD, new PreMessageReceivedEventListener() {
+            @Override
+            public Message onPreMessageReceived(Peer peer, Message m) {
+                if(m instanceof AddressMessage)
+                {
+                    List<PeerAddress> addrs = ((AddressMessage) m).getAddresses();
+                    for(int i = 0; i < addrs.size() && i < MAX_ADDRS_PER_MESSAGE; i++)
+                    {
+                        PeerAddress addr = addrs.get(i);
+                        if(addr.getAddr() != null)
+                            add(new InetSocketAddress(addr.getAddr(), addr.getPort()));
+                    }
+                }
+                return m;
+            }
+        });
+    }
+
+    // Writes the book to a temporary file first so a crash never leaves a torn score file
+    public synchronized void save() throws IOException
+    {
+        // Unresolved hostnames have no IP to write, they are left out until they are next added
+        List<Entry> resolved = new ArrayList<Entry>();
+        for(Entry e : entries.values())
+            if(e.address.getAddress() != null)
+                resolved.add(e);
+        File tmp = new File(scoreFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(FILE_VERSION);
+            out.writeInt(resolved.size());
+            for(Entry e : resolved)
+            {
+                byte[] ip = e.address.getAddress().getAddress();
+                out.writeByte(ip.length);
+                out.write(ip);
+                out.writeShort(e.address.getPort());
+                out.writeInt(e.latencyMillis);
+                out.writeInt(e.successes);
+                out.writeInt(e.failures);
+                out.writeByte(Math.min(e.failureStreak, 255));
+                out.writeLong(e.lastSeen);
+            }
+        } finally {
+            out.close();
+        }
+        if(!tmp.renameTo(scoreFile))
+        {
+            // Windows will not rename over an existing file
+            scoreFile.delete();
+            if(!tmp.renameTo(scoreFile))
+                throw new IOException("Could not replace " + scoreFile);
+        }
+    }
+
+    private synchronized void read() throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(scoreFile)));
+        try {
+            if(in.readInt() != MAGIC || in.readUnsignedByte() != FILE_VERSION)
+                throw new IOException("Unrecognized peer score file " + scoreFile);
+            int count = Math.min(in.readInt(), MAX_ENTRIES);
+            for(int i = 0; i < count; i++)
+            {
+                int ipLen = in.readUnsignedByte();
+                if(ipLen != 4 && ipLen != 16)
+                    throw new IOException("Corrupt peer score file " + scoreFile);
+                byte[] ip = new byte[ipLen];
+                in.readFully(ip);
+                Entry e = new Entry(new InetSocketAddress(InetAddress.getByAddress(ip), in.readUnsignedShort()));
+                e.latencyMillis = in.readInt();
+                e.successes = in.readInt();
+                e.failures = in.readInt();
+                e.failureStreak = in.readUnsignedByte();
+                e.lastSeen = in.readLong();
+                entries.put(e.address, e);
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
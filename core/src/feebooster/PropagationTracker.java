@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.bitcoinj.core.*;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.listeners.PeerConnectedEventListener;
+import org.bitcoinj.core.listeners.PeerDisconnectedEventListener;
+import org.bitcoinj.core.listeners.PreMessageReceivedEventListener;
+import org.bitcoinj.utils.Threading;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// Watches a peer group for signs that one transaction is spreading. The broadcast pushes it straight
+// to some of the peers, and those never announce it back. It has spread once half of the other peers
+// have announced it to us, as recorded in its confidence, so they got it from someone else. Peers
+// rejecting it or going away before announcing it are noted too.
+public class PropagationTracker {
+
+    private final Sha256Hash txid;
+    private final TransactionConfidence confidence;
+    private final long startMillis;
+    private final Map<InetSocketAddress, PeerRecord> peers = new LinkedHashMap<InetSocketAddress, PeerRecord>();
+    private final List<Long> ackTimes = new ArrayList<Long>();
+    private final List<Registration> listeners = new CopyOnWriteArrayList<Registration>();
+    private PeerGroup peerGroup;
+    private ListenableFuture<Transaction> broadcastFuture;
+
+    private final TransactionConfidence.Listener confidenceListener = new TransactionConfidence.Listener() {
+        @Override
+        public void onConfidenceChanged(TransactionConfidence confidence, ChangeReason reason) {
+            if(reason == ChangeReason.SEEN_PEERS)
+                announced(confidence.getBroadcastBy());
+        }
+    };
+
+    private final PreMessageReceivedEventListener rejectListener = new PreMessageReceivedEventListener() {
+        @Override
+        public Message onPreMessageReceived(Peer peer, Message m) {
+            if(m instanceof RejectMessage)
+            {
+                RejectMessage reject = (RejectMessage) m;
+                if(txid.equals(reject.getRejectedObjectHash()))
+                    rejected(peer, reject.getReasonString());
+            }
+            return m;
+        }
+    };
+
+    private final PeerConnectedEventListener connectListener = new PeerConnectedEventListener() {
+        @Override
+        public void onPeerConnected(Peer peer, int peerCount) {
+            synchronized(PropagationTracker.this)
+            {
+                recordFor(peer.getAddress().getSocketAddress());
+            }
+        }
+    };
+
+    private final PeerDisconnectedEventListener disconnectListener = new PeerDisconnectedEventListener() {
+        @Override
+        public void onPeerDisconnected(Peer peer, int peerCount) {
+            dropped(peer);
+        }
+    };
+
+    public static class PeerRecord {
+        private long sentMillis = -1;
+        private long announcedMillis = -1;
+        private String rejectReason;
+        private boolean dropped;
+
+        // Millis after the broadcast started that the transaction was pushed to the peer, or -1
+        public long getSentMillis()
+        {
+            return sentMillis;
+        }
+
+        // Millis after the broadcast started that the peer announced the transaction to us, or -1
+        public long getAnnouncedMillis()
+        {
+            return announcedMillis;
+        }
+
+        public String getRejectReason()
+        {
+            return rejectReason;
+        }
+
+        // Disconnected before it was sent or announced the transaction
+        public boolean isDropped()
+        {
+            return dropped;
+        }
+    }
+
+    private static class Registration {
+        final Runnable listener;
+        final Executor executor;
+
+        Registration(Runnable listener, Executor executor)
+        {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+
+    // The confidence must come from the peer group's context, that is where its peers record announcements
+    public PropagationTracker(Transaction tx, Context context)
+    {
+        this.txid = tx.getTxId();
+        this.confidence = tx.getConfidence(context);
+        this.startMillis = System.currentTimeMillis();
+    }
+
+    public Sha256Hash getTxid()
+    {
+        return txid;
+    }
+
+    // Must be attached before the transaction is sent so that no peer is missed
+    public synchronized void attach(PeerGroup peerGroup)
+    {
+        this.peerGroup = peerGroup;
+        for(Peer peer : peerGroup.getConnectedPeers())
+            recordFor(peer.getAddress().getSocketAddress());
+        peerGroup.addConnectedEventListener(Threading.SAME_THREAD, connectListener);
+        peerGroup.addPreMessageReceivedEventListener(Threading.SAME_THREAD, rejectListener);
+        peerGroup.addDisconnectedEventListener(Threading.SAME_THREAD, disconnectListener);
+        confidence.addEventListener(Threading.SAME_THREAD, confidenceListener);
+    }
+
+    public synchronized void detach()
+    {
+        if(peerGroup == null)
+            return;
+        confidence.removeEventListener(confidenceListener);
+        peerGroup.removeConnectedEventListener(connectListener);
+        peerGroup.removePreMessageReceivedEventListener(rejectListener);
+        peerGroup.removeDisconnectedEventListener(disconnectListener);
+        peerGroup = null;
+    }
+
+    synchronized void setBroadcastFuture(ListenableFuture<Transaction> broadcastFuture)
+    {
+        this.broadcastFuture = broadcastFuture;
+    }
+
+    // Completes once bitcoinj counts the broadcast as done
+    public synchronized ListenableFuture<Transaction> getBroadcastFuture()
+    {
+        return broadcastFuture;
+    }
+
+    // Runs the listener on the executor whenever the transaction is sent to, announced, rejected or dropped by a peer
+    public void addListener(Runnable listener, Executor executor)
+    {
+        listeners.add(new Registration(listener, executor));
+    }
+
+    public synchronized int getSentCount()
+    {
+        int count = 0;
+        for(PeerRecord r : peers.values())
+            if(r.sentMillis >= 0)
+                count++;
+        return count;
+    }
+
+    public synchronized int getAnnouncedCount()
+    {
+        return ackTimes.size();
+    }
+
+    // Peers it was not pushed to that could still announce it, or already have
+    public synchronized int getOtherPeerCount()
+    {
+        int count = 0;
+        for(PeerRecord r : peers.values())
+            if(r.sentMillis < 0 && (r.announcedMillis >= 0 || !r.dropped))
+                count++;
+        return count;
+    }
+
+    // Announcements needed for the transaction to count as propagated, half the other peers
+    public synchronized int getTarget()
+    {
+        return Math.max(1, (getOtherPeerCount() + 1) / 2);
+    }
+
+    public synchronized Map<InetSocketAddress, String> getRejections()
+    {
+        Map<InetSocketAddress, String> rejections = new LinkedHashMap<InetSocketAddress, String>();
+        for(Map.Entry<InetSocketAddress, PeerRecord> e : peers.entrySet())
+            if(e.getValue().rejectReason != null)
+                rejections.put(e.getKey(), e.getValue().rejectReason);
+        return rejections;
+    }
+
+    public synchronized List<InetSocketAddress> getDroppedPeers()
+    {
+        List<InetSocketAddress> dropped = new ArrayList<InetSocketAddress>();
+        for(Map.Entry<InetSocketAddress, PeerRecord> e : peers.entrySet())
+            if(e.getValue().dropped)
+                dropped.add(e.getKey());
+        return dropped;
+    }
+
+    // Per peer timings, in the order the peers were first seen
+    public synchronized Map<InetSocketAddress, PeerRecord> getPeerRecords()
+    {
+        return new LinkedHashMap<InetSocketAddress, PeerRecord>(peers);
+    }
+
+    // Millis from the start of the broadcast until n other peers had announced the transaction, or -1 if not yet
+    public synchronized long timeToPeers(int n)
+    {
+        if(n < 1 || n > ackTimes.size())
+            return -1;
+        return ackTimes.get(n - 1);
+    }
+
+    public synchronized boolean isPropagated()
+    {
+        return ackTimes.size() >= getTarget();
+    }
+
+    // Blocks until the target number of other peers have announced the transaction. Returns false on timeout.
+    public synchronized boolean awaitPropagation(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        while(!isPropagated())
+        {
+            long remaining = deadline - System.currentTimeMillis();
+            if(remaining <= 0)
+                return false;
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public synchronized String summary()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Sent to ").append(getSentCount()).append(" peers, announced back by ")
+                .append(getAnnouncedCount()).append(" of ").append(getOtherPeerCount()).append(" others");
+        int target = getTarget();
+        long toTarget = timeToPeers(target);
+        if(toTarget >= 0)
+            sb.append("\nReached ").append(target).append(" peers in ").append(toTarget).append(" ms");
+        Map<InetSocketAddress, String> rejections = getRejections();
+        if(!rejections.isEmpty())
+            sb.append("\nRejected by ").append(rejections.size()).append(" peers: ")
+                    .append(rejections.values().iterator().next());
+        int dropped = getDroppedPeers().size();
+        if(dropped > 0)
+            sb.append("\n").append(dropped).append(" peers disconnected without taking it");
+        return sb.toString();
+    }
+
+    private PeerRecord recordFor(InetSocketAddress address)
+    {
+        PeerRecord record = peers.get(address);
+        if(record == null)
+        {
+            record = new PeerRecord();
+            peers.put(address, record);
+        }
+        return record;
+    }
+
+    // Called by the broadcaster's peers as a transaction goes out to them
+    void sent(Peer peer, Transaction tx)
+    {
+        if(!txid.equals(tx.getTxId()))
+            return;
+        synchronized(this)
+        {
+            PeerRecord record = recordFor(peer.getAddress().getSocketAddress());
+            if(record.sentMillis >= 0)
+                return;
+            long elapsed = System.currentTimeMillis() - startMillis;
+            record.sentMillis = elapsed;
+            if(Metrics.ENABLED)
+                Metrics.record("broadcast.send", peer.getAddress().getSocketAddress().toString(), elapsed * 1000000L);
+            notifyAll();
+        }
+        fireUpdate();
+    }
+
+    private void announced(Set<PeerAddress> broadcastBy)
+    {
+        synchronized(this)
+        {
+            long elapsed = System.currentTimeMillis() - startMillis;
+            boolean changed = false;
+            for(PeerAddress address : broadcastBy)
+            {
+                PeerRecord record = recordFor(address.getSocketAddress());
+                // A peer we pushed it to is only echoing us, it says nothing about the rest of the network
+                if(record.announcedMillis >= 0 || record.sentMillis >= 0)
+                    continue;
+                record.announcedMillis = elapsed;
+                ackTimes.add(elapsed);
+                changed = true;
+            }
+            if(!changed)
+                return;
+            notifyAll();
+        }
+        fireUpdate();
+    }
+
+    private void rejected(Peer peer, String reason)
+    {
+        synchronized(this)
+        {
+            recordFor(peer.getAddress().getSocketAddress()).rejectReason = reason;
+        }
+        fireUpdate();
+    }
+
+    private void dropped(Peer peer)
+    {
+        synchronized(this)
+        {
+            PeerRecord record = peers.get(peer.getAddress().getSocketAddress());
+            if(record == null || record.sentMillis >= 0 || record.announcedMillis >= 0 || record.dropped)
+                return;
+            record.dropped = true;
+            // One fewer peer left to announce it, the target may have just been met
+            notifyAll();
+        }
+        fireUpdate();
+    }
+
+    private void fireUpdate()
+    {
+        for(Registration r : listeners)
+            r.executor.execute(r.listener);
+    }
+}
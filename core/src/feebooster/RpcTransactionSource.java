@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+// Looks transactions up on our own bitcoind over JSON-RPC. Batches go out as JSON-RPC batch requests,
+// so hundreds of txids cost one round trip. Raw transactions come from getrawtransaction, which needs
+// -txindex for confirmed ones, and fees from getmempoolentry, so only unconfirmed ones have a fee.
+// Without -txindex a confirmed transaction also looks MISSING, findConfirmed goes to the UTXO set for those.
+public class RpcTransactionSource implements TransactionSource {
+
+    public static final String DEFAULT_URL = "http://127.0.0.1:8332/";
+
+    // Calls per batch request, keeps a single response to a sensible size
+    public static final int MAX_BATCH = 500;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final File cookieFile;
+
+    public RpcTransactionSource(String url, String user, String password)
+    {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.cookieFile = null;
+    }
+
+    // Authenticates with the .cookie file bitcoind writes to its data directory. It is read again
+    // on every request since the node writes a new one each time it starts.
+    public RpcTransactionSource(String url, File cookieFile)
+    {
+        this.url = url;
+        this.user = null;
+        this.password = null;
+        this.cookieFile = cookieFile;
+    }
+
+    @Override
+    public boolean isBatching()
+    {
+        return true;
+    }
+
+    @Override
+    public byte[] getRawTransaction(String txid) throws IOException
+    {
+        return getRawTransactions(Collections.singletonList(txid)).get(txid);
+    }
+
+    @Override
+    public Long getFee(String txid) throws IOException
+    {
+        return getFees(Collections.singletonList(txid)).get(txid);
+    }
+
+    @Override
+    public Map<String, byte[]> getRawTransactions(Collection<String> txids) throws IOException
+    {
+        Map<String, byte[]> result = new HashMap<String, byte[]>();
+        for(Map.Entry<String, Object> entry : call("getrawtransaction", txids, false).entrySet())
+            if(entry.getValue() instanceof String)
+                result.put(entry.getKey(), Hex.decode((String) entry.getValue()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getFees(Collection<String> txids) throws IOException
+    {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for(Map.Entry<String, Object> entry : call("getmempoolentry", txids, null).entrySet())
+        {
+            if(!(entry.getValue() instanceof JSONObject))
+                continue;
+            JSONObject mempoolEntry = (JSONObject) entry.getValue();
+
+            // Newer nodes only report fees.base, older ones only fee
+            JSONObject fees = mempoolEntry.optJSONObject("fees");
+            Object fee = fees != null ? fees.opt("base") : mempoolEntry.opt("fee");
+            if(fee != null)
+                result.put(entry.getKey(), toSatoshis(fee));
+        }
+        return result;
+    }
+
+    @Override
+    public Status getStatus(String txid) throws IOException
+    {
+        return getStatuses(Collections.singletonList(txid)).get(txid);
+    }
+
+    // Mempool entries first, then the verbose transaction for whatever is not in the mempool
+    @Override
+    public Map<String, Status> getStatuses(Collection<String> txids) throws IOException
+    {
+        Map<String, Status> result = new HashMap<String, Status>();
+        Map<String, Object> mempool = call("getmempoolentry", txids, null);
+        List<String> rest = new ArrayList<String>();
+        for(String txid : txids)
+        {
+            if(mempool.containsKey(txid))
+                result.put(txid, Status.MEMPOOL);
+            else
+                rest.add(txid);
+        }
+        Map<String, Object> verbose = rest.isEmpty() ? Collections.<String, Object>emptyMap() : call("getrawtransaction", rest, true);
+        for(String txid : rest)
+        {
+            Object tx = verbose.get(txid);
+            if(!(tx instanceof JSONObject))
+                result.put(txid, Status.MISSING);
+            else if(((JSONObject) tx).optLong("confirmations", 0) > 0)
+                result.put(txid, Status.CONFIRMED);
+            else
+                result.put(txid, Status.MEMPOOL);
+        }
+        return result;
+    }
+
+    // gettxout without the mempool only answers for unspent outputs in a block, which needs no
+    // -txindex. A spent output tells nothing, so every output is asked and one answer is enough.
+    @Override
+    public Set<String> findConfirmed(Collection<Transaction> txs) throws IOException
+    {
+        List<String> txids = new ArrayList<String>();
+        List<JSONArray> params = new ArrayList<JSONArray>();
+        for(Transaction tx : txs)
+        {
+            List<TxOutput> outputs = tx.getOutputs();
+            for(int n = 0; n < outputs.size(); n++)
+            {
+                // OP_RETURN outputs never make it into the UTXO set
+                byte[] script = outputs.get(n).getScript();
+                if(script.length > 0 && Utils.getUnsignedByte(script[0]) == 0x6a)
+                    continue;
+                txids.add(tx.getHash());
+                params.add(new JSONArray().put(tx.getHash()).put(n).put(false));
+            }
+        }
+        Object[] results = batch("gettxout", params);
+        Set<String> confirmed = new HashSet<String>();
+        for(int i = 0; i < results.length; i++)
+            if(results[i] instanceof JSONObject)
+                confirmed.add(txids.get(i));
+        return confirmed;
+    }
+
+    // Calls method once per txid, with extraParam after the txid unless it is null, and returns the
+    // results by txid, leaving out calls that failed
+    private Map<String, Object> call(String method, Collection<String> txids, Object extraParam) throws IOException
+    {
+        List<String> ids = new ArrayList<String>(txids);
+        List<JSONArray> params = new ArrayList<JSONArray>(ids.size());
+        for(String txid : ids)
+        {
+            JSONArray p = new JSONArray();
+            p.put(txid);
+            if(extraParam != null)
+                p.put(extraParam);
+            params.add(p);
+        }
+        Object[] results = batch(method, params);
+        Map<String, Object> byTxid = new HashMap<String, Object>();
+        for(int i = 0; i < results.length; i++)
+            if(results[i] != null)
+                byTxid.put(ids.get(i), results[i]);
+        return byTxid;
+    }
+
+    // Calls method once per entry of params, MAX_BATCH calls per request. Results are in the same
+    // order as params, null for calls that failed or returned nothing.
+    private Object[] batch(String method, List<JSONArray> params) throws IOException
+    {
+        Object[] results = new Object[params.size()];
+        for(int from = 0; from < params.size(); from += MAX_BATCH)
+        {
+            int to = Math.min(from + MAX_BATCH, params.size());
+            JSONArray batch = new JSONArray();
+            for(int i = from; i < to; i++)
+            {
+                JSONObject request = new JSONObject();
+                request.put("jsonrpc", "1.0");
+                request.put("id", i);
+                request.put("method", method);
+                request.put("params", params.get(i));
+                batch.put(request);
+            }
+
+            JSONArray responses = new JSONArray(ApiClient.post(url, "application/json", batch.toString(), authHeader()));
+            for(int r = 0; r < responses.length(); r++)
+            {
+                JSONObject response = responses.getJSONObject(r);
+                int id = response.optInt("id", -1);
+                if(id < from || id >= to || !response.isNull("error") || response.isNull("result"))
+                    continue;
+                results[id] = response.opt("result");
+            }
+        }
+        return results;
+    }
+
+    private Map<String, String> authHeader() throws IOException
+    {
+        String credentials;
+        if(cookieFile != null)
+            credentials = new String(Files.readAllBytes(cookieFile.toPath()), StandardCharsets.UTF_8).trim();
+        else
+            credentials = user + ":" + password;
+        String encoded = Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+        return Collections.singletonMap("Authorization", "Basic " + encoded);
+    }
+
+    // RPC amounts are BTC, go through the decimal text so nothing is lost to floating point
+    private static long toSatoshis(Object btc)
+    {
+        return new BigDecimal(btc.toString()).movePointRight(8).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
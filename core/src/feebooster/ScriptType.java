@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+public enum ScriptType {
+
+    P2PKH((byte) 0x00),
+    P2SH((byte) 0x05),
+    P2PK_COMPRESSED((byte) 0x00),
+    P2PK_UNCOMPRESSED((byte) 0x00),
+    P2WPKH((byte) 0x00),
+    P2WSH((byte) 0x00),
+    NONSTANDARD((byte) 0x00);
+
+    private final byte addressVersion;
+
+    ScriptType(byte addressVersion)
+    {
+        this.addressVersion = addressVersion;
+    }
+
+    // Base58Check version byte of the address for this kind of output
+    public byte getAddressVersion()
+    {
+        return addressVersion;
+    }
+
+    // Segwit outputs have bech32 addresses, which are not supported yet
+    public boolean hasAddress()
+    {
+        return this != NONSTANDARD && this != P2WPKH && this != P2WSH;
+    }
+
+    public static ScriptType classify(byte[] script)
+    {
+        int len = script.length;
+
+        // OP_DUP OP_HASH160 <20 bytes> OP_EQUALVERIFY OP_CHECKSIG
+        if(len == 25 && Utils.getUnsignedByte(script[0]) == 0x76
+                && Utils.getUnsignedByte(script[1]) == 0xa9
+                && Utils.getUnsignedByte(script[2]) == 0x14
+                && Utils.getUnsignedByte(script[23]) == 0x88
+                && Utils.getUnsignedByte(script[24]) == 0xac)
+            return P2PKH;
+
+        // OP_HASH160 <20 bytes> OP_EQUAL
+        if(len == 23 && Utils.getUnsignedByte(script[0]) == 0xa9
+                && Utils.getUnsignedByte(script[1]) == 0x14
+                && Utils.getUnsignedByte(script[22]) == 0x87)
+            return P2SH;
+
+        // OP_0 <20 bytes>
+        if(len == 22 && script[0] == 0x00 && Utils.getUnsignedByte(script[1]) == 0x14)
+            return P2WPKH;
+
+        // OP_0 <32 bytes>
+        if(len == 34 && script[0] == 0x00 && Utils.getUnsignedByte(script[1]) == 0x20)
+            return P2WSH;
+
+        // <65 byte pubkey> OP_CHECKSIG
+        if(len == 67 && Utils.getUnsignedByte(script[0]) == 0x41
+                && Utils.getUnsignedByte(script[1]) == 0x04
+                && Utils.getUnsignedByte(script[66]) == 0xac)
+            return P2PK_UNCOMPRESSED;
+
+        // <33 byte pubkey> OP_CHECKSIG
+        if(len == 35 && Utils.getUnsignedByte(script[0]) == 0x21
+                && (Utils.getUnsignedByte(script[1]) == 0x02 || Utils.getUnsignedByte(script[1]) == 0x03)
+                && Utils.getUnsignedByte(script[34]) == 0xac)
+            return P2PK_COMPRESSED;
+
+        return NONSTANDARD;
+    }
+}
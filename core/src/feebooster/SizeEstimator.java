@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.util.List;
+
+// Predicts the signed size and weight of a transaction that is still unsigned. Each input adds the
+// scriptSig and witness its type will get once signed, counted with the largest signature (72 bytes
+// with the sighash byte), so estimates err on the side of paying a little more. Inputs that already
+// carry a scriptSig are taken as they are.
+public class SizeEstimator {
+
+    public static final int SIGNATURE_SIZE = 72;
+    public static final int COMPRESSED_PUBKEY_SIZE = 33;
+    public static final int UNCOMPRESSED_PUBKEY_SIZE = 65;
+
+    // Used for P2SH outputs, whose redeem script cannot be seen before they are spent
+    public static final int DEFAULT_MULTISIG_M = 2;
+    public static final int DEFAULT_MULTISIG_N = 3;
+
+    // How an input will be signed
+    public enum InputType {
+        P2PKH_COMPRESSED,
+        P2PKH_UNCOMPRESSED,
+        P2PK,
+        P2SH_MULTISIG,
+        P2WPKH,
+        P2SH_P2WPKH
+    }
+
+    private int inputs = 0;
+    private int outputs = 0;
+
+    // Everything but the counts, the segwit marker and flag, and the witnesses
+    private long baseSize = 8;
+    private long witnessSize = 0;
+    private boolean hasWitness = false;
+
+    public SizeEstimator addInput(InputType type)
+    {
+        if(type == InputType.P2SH_MULTISIG)
+            return addMultisigInput(DEFAULT_MULTISIG_M, DEFAULT_MULTISIG_N);
+        inputs++;
+        switch(type)
+        {
+            case P2PKH_COMPRESSED:
+                addScriptSig(pushSize(SIGNATURE_SIZE) + pushSize(COMPRESSED_PUBKEY_SIZE));
+                witnessSize += 1;
+                break;
+            case P2PKH_UNCOMPRESSED:
+                addScriptSig(pushSize(SIGNATURE_SIZE) + pushSize(UNCOMPRESSED_PUBKEY_SIZE));
+                witnessSize += 1;
+                break;
+            case P2PK:
+                addScriptSig(pushSize(SIGNATURE_SIZE));
+                witnessSize += 1;
+                break;
+            case P2WPKH:
+                addScriptSig(0);
+                addWitness(SIGNATURE_SIZE, COMPRESSED_PUBKEY_SIZE);
+                break;
+            case P2SH_P2WPKH:
+                // The scriptSig only pushes the 22 byte witness program
+                addScriptSig(pushSize(22));
+                addWitness(SIGNATURE_SIZE, COMPRESSED_PUBKEY_SIZE);
+                break;
+        }
+        return this;
+    }
+
+    // m-of-n bare multisig behind P2SH: OP_0 <m signatures> <redeem script>
+    public SizeEstimator addMultisigInput(int m, int n)
+    {
+        if(m < 1 || m > n || n > 16)
+            throw new IllegalArgumentException("Invalid multisig " + m + "-of-" + n);
+        inputs++;
+        int redeemScript = 3 + n * pushSize(COMPRESSED_PUBKEY_SIZE);
+        addScriptSig(1 + m * pushSize(SIGNATURE_SIZE) + pushSize(redeemScript));
+        witnessSize += 1;
+        return this;
+    }
+
+    // An input whose scriptSig and witness are already final, such as one from a signed transaction
+    public SizeEstimator addSignedInput(TxInput in)
+    {
+        inputs++;
+        addScriptSig(in.getScript().length);
+        if(in.hasWitness())
+        {
+            hasWitness = true;
+            witnessSize += TxInput.witnessSize(in);
+        }
+        else
+        {
+            witnessSize += 1;
+        }
+        return this;
+    }
+
+    public SizeEstimator addOutput(int scriptLength)
+    {
+        outputs++;
+        baseSize += 8 + Utils.varIntSize(scriptLength) + scriptLength;
+        return this;
+    }
+
+    public SizeEstimator addOutput(TxOutput out)
+    {
+        return addOutput(out.getScript().length);
+    }
+
+    // Serialized size without witnesses, what the txid commits to
+    public long getStrippedSize()
+    {
+        return baseSize + Utils.varIntSize(inputs) + Utils.varIntSize(outputs);
+    }
+
+    // Serialized size with witnesses, if any input has one
+    public long getSize()
+    {
+        return hasWitness ? getStrippedSize() + 2 + witnessSize : getStrippedSize();
+    }
+
+    // Witness bytes count once, everything else four times (BIP 141)
+    public long getWeight()
+    {
+        return getStrippedSize() * 3 + getSize();
+    }
+
+    // Size in virtual bytes, what fee rates are quoted in
+    public long getVsize()
+    {
+        return (getWeight() + 3) / 4;
+    }
+
+    // Expected type of an input spending out. P2SH is assumed to be multisig, and anything not
+    // recognised is counted as the largest single key spend.
+    public static InputType inputType(TxOutput out)
+    {
+        switch(out.getScriptType())
+        {
+            case P2PKH:
+                return InputType.P2PKH_COMPRESSED;
+            case P2PK_COMPRESSED:
+            case P2PK_UNCOMPRESSED:
+                return InputType.P2PK;
+            case P2SH:
+                return InputType.P2SH_MULTISIG;
+            case P2WPKH:
+                return InputType.P2WPKH;
+            default:
+                return InputType.P2PKH_UNCOMPRESSED;
+        }
+    }
+
+    // Estimate for tx once signed. spent holds the outputs its inputs spend, in order, or null when
+    // they are not known, in which case unsigned inputs are taken to be compressed P2PKH.
+    public static SizeEstimator estimate(Transaction tx, List<TxOutput> spent)
+    {
+        SizeEstimator estimator = new SizeEstimator();
+        List<TxInput> ins = tx.getInputs();
+        for(int i = 0; i < ins.size(); i++)
+        {
+            if(isSigned(ins.get(i)))
+                estimator.addSignedInput(ins.get(i));
+            else
+                estimator.addInput(spent == null ? InputType.P2PKH_COMPRESSED : inputType(spent.get(i)));
+        }
+        for(TxOutput out : tx.getOutputs())
+            estimator.addOutput(out);
+        return estimator;
+    }
+
+    public static SizeEstimator estimate(Transaction tx)
+    {
+        return estimate(tx, null);
+    }
+
+    // Unsigned inputs have no witness and an empty script or the single 0x00 placeholder the wizard puts in
+    private static boolean isSigned(TxInput in)
+    {
+        if(in.hasWitness())
+            return true;
+        byte[] script = in.getScript();
+        return script.length > 1 || (script.length == 1 && script[0] != 0x00);
+    }
+
+    private void addScriptSig(int length)
+    {
+        baseSize += 32 + 4 + Utils.varIntSize(length) + length + 4;
+    }
+
+    // Witness stack of the given item sizes
+    private void addWitness(int... items)
+    {
+        hasWitness = true;
+        witnessSize += Utils.varIntSize(items.length);
+        for(int item : items)
+            witnessSize += Utils.varIntSize(item) + item;
+    }
+
+    // Bytes taken by pushing data of the given length
+    private static int pushSize(int length)
+    {
+        if(length < 0x4c)
+            return 1 + length;
+        if(length <= 0xff)
+            return 2 + length;
+        return 3 + length;
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Transaction {
+
+    private int version = 1;
+    private long numInputs = 0;
+    private long numOutputs = 0;
+    private List<TxInput> inputs = new ArrayList<TxInput>();
+    private List<TxOutput> outputs = new ArrayList<TxOutput>();
+    private int locktime = 0;
+    private String hash;
+    private byte[] hashBytes;
+    private long size;
+    private long fee = 0;
+    private long outAmt = 0;
+    private long totalAmtPre = 0;
+    private String witnessHash;
+    private byte[] witnessHashBytes;
+    private long strippedSize;
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public int getVersion()
+    {
+        return version;
+    }
+
+    public void setNumInputs(long numInputs) {
+        this.numInputs = numInputs;
+    }
+
+    public long getNumInputs()
+    {
+        return numInputs;
+    }
+
+    public void setNumOutputs(long numOutputs) {
+        this.numOutputs = numOutputs;
+    }
+
+    public long getNumOutputs()
+    {
+        return numOutputs;
+    }
+
+    public void addInput(TxInput in) {
+        inputs.add(in);
+        numInputs++;
+    }
+
+    public void addOutput(TxOutput out) {
+        outputs.add(out);
+        numOutputs++;
+    }
+
+    public void setLocktime(int locktime) {
+        this.locktime = locktime;
+    }
+
+    public int getLocktime()
+    {
+        return locktime;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+        this.hashBytes = null;
+    }
+
+    public String getHash() {
+        if(hash == null && hashBytes != null)
+            hash = Utils.bytesToHexReversed(ByteBuffer.wrap(hashBytes));
+        return hash;
+    }
+
+    // The wtxid, the same as the txid unless the transaction has witnesses
+    public void setWitnessHash(String witnessHash) {
+        this.witnessHash = witnessHash;
+        this.witnessHashBytes = null;
+    }
+
+    public String getWitnessHash() {
+        if(witnessHash == null && witnessHashBytes != null)
+            witnessHash = Utils.bytesToHexReversed(ByteBuffer.wrap(witnessHashBytes));
+        return witnessHash != null ? witnessHash : getHash();
+    }
+
+    // Txid and wtxid in serialized (little endian) byte order, hex is only made if asked for
+    void setHashBytes(byte[] hashBytes, byte[] witnessHashBytes)
+    {
+        this.hash = null;
+        this.hashBytes = hashBytes;
+        this.witnessHash = null;
+        this.witnessHashBytes = witnessHashBytes;
+    }
+
+    // Txid in serialized byte order, or null if the transaction has none
+    public byte[] getHashBytes()
+    {
+        if(hashBytes == null && hash != null)
+            hashBytes = Utils.byteSwap(Utils.hexStringToByteArray(hash));
+        return hashBytes == null ? null : hashBytes.clone();
+    }
+
+    public byte[] getWitnessHashBytes()
+    {
+        if(witnessHashBytes == null && witnessHash != null)
+            witnessHashBytes = Utils.byteSwap(Utils.hexStringToByteArray(witnessHash));
+        return witnessHashBytes == null ? getHashBytes() : witnessHashBytes.clone();
+    }
+
+    public void setFee(long fee) {
+        this.fee = fee;
+    }
+
+    public long getFee() {
+        return fee;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    // Size without the segwit marker, flag and witnesses
+    public void setStrippedSize(long strippedSize)
+    {
+        this.strippedSize = strippedSize;
+    }
+
+    public long getStrippedSize()
+    {
+        return strippedSize > 0 ? strippedSize : size;
+    }
+
+    // Witness bytes count once, everything else four times (BIP 141)
+    public long getWeight()
+    {
+        return getStrippedSize() * 3 + size;
+    }
+
+    // Size in virtual bytes, what fee rates apply to
+    public long getVsize()
+    {
+        return (getWeight() + 3) / 4;
+    }
+
+    public boolean hasWitness()
+    {
+        for(TxInput input : inputs)
+            if(input.hasWitness())
+                return true;
+        return false;
+    }
+
+    public long getTotalAmt()
+    {
+        return outAmt + fee;
+    }
+
+    public void setOutAmt(long outAmt)
+    {
+        this.outAmt = outAmt;
+    }
+
+    public long getOutAmt()
+    {
+        return outAmt;
+    }
+
+    public void setTotalAmtPre(long totalAmtPre)
+    {
+        this.totalAmtPre = totalAmtPre;
+    }
+
+    // Total value of the outputs this transaction spends
+    public long getTotalAmtPre()
+    {
+        return totalAmtPre;
+    }
+
+    public List<TxInput> getInputs()
+    {
+        return inputs;
+    }
+
+    public List<TxOutput> getOutputs()
+    {
+        return outputs;
+    }
+
+    public static boolean deserializeStr(CharSequence txHex, Transaction tx)
+    {
+        Metrics.Span span = Metrics.span("deserialize");
+        try
+        {
+            ByteBuffer txBytes = ByteBuffer.wrap(Utils.hexStringToByteArray(txHex));
+
+            // Reject trailing data before touching tx
+            if(TxDecoder.measure(txBytes) != txBytes.remaining())
+            {
+                Metrics.fail(span);
+                return false;
+            }
+            TxDecoder.decode(txBytes, tx);
+        }
+        catch(IllegalArgumentException e)
+        {
+            Metrics.fail(span);
+            return false;
+        }
+        catch(TxDecodeException e)
+        {
+            Metrics.fail(span);
+            return false;
+        }
+
+        Metrics.end(span);
+        return true;
+    }
+
+    // Unsigned transactions have no witnesses, signed ones use the segwit format if any input has one
+    public static int serializedSize(Transaction tx, boolean unsigned)
+    {
+        int size = 4 + Utils.varIntSize(tx.getInputs().size()) + Utils.varIntSize(tx.getOutputs().size()) + 4;
+        for(TxInput input : tx.getInputs())
+            size += TxInput.serializedSize(input, unsigned);
+        for(TxOutput output : tx.getOutputs())
+            size += TxOutput.serializedSize(output);
+        if(!unsigned && tx.hasWitness())
+        {
+            size += 2;
+            for(TxInput input : tx.getInputs())
+                size += TxInput.witnessSize(input);
+        }
+        return size;
+    }
+
+    public static byte[] serialize(Transaction tx, boolean unsigned)
+    {
+        byte[] txBytes = new byte[serializedSize(tx, unsigned)];
+        write(tx, unsigned, ByteBuffer.wrap(txBytes));
+        return txBytes;
+    }
+
+    // Writes the transaction at the buffer's position and moves the position past it.
+    // Throws BufferOverflowException without writing anything if it does not fit.
+    public static void serialize(Transaction tx, boolean unsigned, ByteBuffer out)
+    {
+        if(out.remaining() < serializedSize(tx, unsigned))
+            throw new BufferOverflowException();
+        write(tx, unsigned, out);
+    }
+
+    private static void write(Transaction tx, boolean unsigned, ByteBuffer out)
+    {
+        Metrics.Span span = Metrics.span("serialize");
+        ByteOrder order = out.order();
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        try
+        {
+            boolean segwit = !unsigned && tx.hasWitness();
+            out.putInt(tx.getVersion());
+            if(segwit)
+            {
+                // Marker and flag
+                out.put((byte) 0x00);
+                out.put((byte) 0x01);
+            }
+            Utils.writeVarInt(out, tx.getInputs().size());
+            for(TxInput input : tx.getInputs())
+                TxInput.serialize(input, unsigned, out);
+            Utils.writeVarInt(out, tx.getOutputs().size());
+            for(TxOutput output : tx.getOutputs())
+                TxOutput.serialize(output, out);
+            if(segwit)
+                for(TxInput input : tx.getInputs())
+                    TxInput.serializeWitness(input, out);
+            out.putInt(tx.getLocktime());
+        }
+        finally
+        {
+            out.order(order);
+        }
+        Metrics.end(span);
+    }
+}
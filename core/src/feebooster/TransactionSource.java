@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Where transactions and the fees they paid are looked up. Sources that can answer many txids in one
+// round trip override the batch methods, the defaults just ask one txid at a time.
+public interface TransactionSource {
+
+    // Where a transaction stands as far as the source can tell
+    enum Status {
+        MEMPOOL,
+        CONFIRMED,
+        MISSING
+    }
+
+    // Returns the raw serialized transaction, or null if the source does not know it
+    byte[] getRawTransaction(String txid) throws IOException;
+
+    // Returns the fee paid in satoshis, or null if the source does not know it
+    Long getFee(String txid) throws IOException;
+
+    Status getStatus(String txid) throws IOException;
+
+    // True when getRawTransactions answers any number of txids in one round trip, so fetching the parents
+    // of a transaction to work out its fee costs no more than asking for the fee
+    default boolean isBatching()
+    {
+        return false;
+    }
+
+    // Txids the source does not know are left out of the result
+    default Map<String, byte[]> getRawTransactions(Collection<String> txids) throws IOException
+    {
+        Map<String, byte[]> result = new HashMap<String, byte[]>();
+        for(String txid : txids)
+        {
+            byte[] raw = getRawTransaction(txid);
+            if(raw != null)
+                result.put(txid, raw);
+        }
+        return result;
+    }
+
+    default Map<String, Long> getFees(Collection<String> txids) throws IOException
+    {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for(String txid : txids)
+        {
+            Long fee = getFee(txid);
+            if(fee != null)
+                result.put(txid, fee);
+        }
+        return result;
+    }
+
+    // Every txid gets a status, MISSING for the ones the source does not know
+    default Map<String, Status> getStatuses(Collection<String> txids) throws IOException
+    {
+        Map<String, Status> result = new HashMap<String, Status>();
+        for(String txid : txids)
+            result.put(txid, getStatus(txid));
+        return result;
+    }
+
+    // Txids of the given transactions that are in a block even though getStatuses reported them
+    // MISSING. Sources whose statuses already see confirmed transactions have nothing to add.
+    default Set<String> findConfirmed(Collection<Transaction> txs) throws IOException
+    {
+        return Collections.emptySet();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+public class TxDecodeException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int position;
+    private final boolean truncated;
+
+    public TxDecodeException(String message, int position, boolean truncated)
+    {
+        super(message + " at byte " + position);
+        this.position = position;
+        this.truncated = truncated;
+    }
+
+    // Offset from the start of the transaction where decoding stopped
+    public int getPosition()
+    {
+        return position;
+    }
+
+    // True if the data ended early, so more input may still complete the transaction
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+}
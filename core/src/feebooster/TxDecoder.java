@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TxDecoder {
+
+    // Upper bound on a transaction's size, anything claiming more is garbage rather than truncated
+    public static final int MAX_TX_SIZE = 4000000;
+
+    // Smallest possible encodings of an input and an output
+    private static final int MIN_INPUT_SIZE = 41;
+    private static final int MIN_OUTPUT_SIZE = 9;
+
+    // Bytes fed in that have not been returned as a transaction yet, kept in write mode
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    private int readPos = 0;
+
+    public static Transaction decode(byte[] bytes) throws TxDecodeException
+    {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    public static Transaction decode(ByteBuffer buf) throws TxDecodeException
+    {
+        Transaction tx = new Transaction();
+        decode(buf, tx);
+        return tx;
+    }
+
+    // Decodes one transaction starting at the buffer's position and moves the position past it.
+    // Txids and scripts in the result are views into buf, so its contents must not change afterwards.
+    // Nothing is added to tx unless the whole transaction decodes. Segwit transactions (BIP 144) get
+    // their witnesses decoded too.
+    public static void decode(ByteBuffer buf, Transaction tx) throws TxDecodeException
+    {
+        ByteBuffer cur = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int start = cur.position();
+
+        // Get the version
+        require(cur, start, 4);
+        int version = cur.getInt();
+        boolean segwit = readMarker(cur, start);
+        int bodyStart = cur.position();
+
+        // Get inputs
+        long numIns = readVarInt(cur, start);
+        checkCount(cur, start, numIns, MIN_INPUT_SIZE, "input count");
+        List<TxInput> inputs = new ArrayList<TxInput>((int) numIns);
+        for (long in = 0; in < numIns; in++) {
+            require(cur, start, 36);
+            ByteBuffer txid = slice(cur, 32);
+            int vout = cur.getInt();
+            ByteBuffer script = readScript(cur, start);
+            require(cur, start, 4);
+            int sequence = cur.getInt();
+            inputs.add(new TxInput(txid, vout, script, sequence));
+        }
+
+        // Get outputs
+        long numOuts = readVarInt(cur, start);
+        checkCount(cur, start, numOuts, MIN_OUTPUT_SIZE, "output count");
+        List<TxOutput> outputs = new ArrayList<TxOutput>((int) numOuts);
+        long outAmt = 0;
+        for (long out = 0; out < numOuts; out++) {
+            require(cur, start, 8);
+            long value = cur.getLong();
+            ByteBuffer script = readScript(cur, start);
+            outputs.add(new TxOutput(value, script));
+            outAmt += value;
+        }
+        int bodyEnd = cur.position();
+
+        // Get the witnesses, one stack per input
+        ByteBuffer[][] witnesses = null;
+        if (segwit) {
+            witnesses = new ByteBuffer[inputs.size()][];
+            boolean any = false;
+            for (int in = 0; in < witnesses.length; in++) {
+                long items = readVarInt(cur, start);
+                checkCount(cur, start, items, 1, "witness item count");
+                witnesses[in] = new ByteBuffer[(int) items];
+                for (int item = 0; item < items; item++)
+                    witnesses[in][item] = readScript(cur, start);
+                any |= items > 0;
+            }
+            if (!any)
+                throw new TxDecodeException("Witness flag set without witnesses", 4, false);
+        }
+
+        // Get the locktime
+        require(cur, start, 4);
+        int locktime = cur.getInt();
+        int end = cur.position();
+
+        // Everything parsed, fill in the transaction
+        tx.setVersion(version);
+        for (int in = 0; in < inputs.size(); in++) {
+            if (witnesses != null)
+                inputs.get(in).setWitnessSlices(witnesses[in]);
+            tx.addInput(inputs.get(in));
+        }
+        for (TxOutput output : outputs)
+            tx.addOutput(output);
+        tx.setOutAmt(outAmt);
+        tx.setLocktime(locktime);
+        tx.setSize(end - start);
+        byte[] hash = new byte[32];
+        Hashing.doubleSha256(range(cur, start, end), hash, 0);
+        if (segwit) {
+            // The wtxid covers everything, the txid leaves out the marker, flag and witnesses
+            byte[] witnessHash = hash;
+            hash = new byte[32];
+            tx.setStrippedSize(4 + (bodyEnd - bodyStart) + 4);
+            ByteBuffer[] stripped = {range(cur, start, start + 4), range(cur, bodyStart, bodyEnd), range(cur, end - 4, end)};
+            Hashing.doubleSha256(stripped, hash, 0);
+            tx.setHashBytes(hash, witnessHash);
+        } else {
+            tx.setHashBytes(hash, null);
+            tx.setStrippedSize(end - start);
+        }
+        buf.position(end);
+    }
+
+    // Returns the length of the transaction starting at the buffer's position without decoding it,
+    // or -1 if the buffer ends before the transaction does. The buffer's position is not changed.
+    public static int measure(ByteBuffer buf) throws TxDecodeException
+    {
+        ByteBuffer cur = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int start = cur.position();
+        try {
+            skip(cur, start, 4);
+            boolean segwit = readMarker(cur, start);
+            long numIns = readVarInt(cur, start);
+            checkCount(cur, start, numIns, MIN_INPUT_SIZE, "input count");
+            for (long in = 0; in < numIns; in++) {
+                skip(cur, start, 36);
+                skip(cur, start, readScriptLen(cur, start));
+                skip(cur, start, 4);
+            }
+            long numOuts = readVarInt(cur, start);
+            checkCount(cur, start, numOuts, MIN_OUTPUT_SIZE, "output count");
+            for (long out = 0; out < numOuts; out++) {
+                skip(cur, start, 8);
+                skip(cur, start, readScriptLen(cur, start));
+            }
+            if (segwit) {
+                for (long in = 0; in < numIns; in++) {
+                    long items = readVarInt(cur, start);
+                    checkCount(cur, start, items, 1, "witness item count");
+                    for (long item = 0; item < items; item++)
+                        skip(cur, start, readScriptLen(cur, start));
+                }
+            }
+            skip(cur, start, 4);
+        } catch (TxDecodeException e) {
+            if (e.isTruncated())
+                return -1;
+            throw e;
+        }
+        return cur.position() - start;
+    }
+
+    // Appends a chunk of a stream of back to back transactions
+    public void feed(byte[] chunk, int offset, int length)
+    {
+        feed(ByteBuffer.wrap(chunk, offset, length));
+    }
+
+    public void feed(ByteBuffer chunk)
+    {
+        if (pending.remaining() < chunk.remaining()) {
+            // Drop what has already been returned
+            pending.flip();
+            pending.position(readPos);
+            pending.compact();
+            readPos = 0;
+
+            // Grow if that was not enough
+            if (pending.remaining() < chunk.remaining()) {
+                int needed = pending.position() + chunk.remaining();
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(needed, pending.capacity() * 2));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+        }
+        pending.put(chunk.duplicate());
+    }
+
+    // Returns the next complete transaction fed in so far, or null if more data is needed
+    public Transaction next() throws TxDecodeException
+    {
+        ByteBuffer view = pending.duplicate();
+        view.limit(pending.position());
+        view.position(readPos);
+        int len = measure(view);
+        if (len < 0)
+            return null;
+
+        // The pending buffer gets reused, so the transaction gets its own copy to slice into
+        byte[] txBytes = new byte[len];
+        view.get(txBytes);
+        readPos += len;
+        return decode(txBytes);
+    }
+
+    // Number of bytes fed in but not yet returned as a transaction
+    public int buffered()
+    {
+        return pending.position() - readPos;
+    }
+
+    public void reset()
+    {
+        pending.clear();
+        readPos = 0;
+    }
+
+    // Reads the segwit marker and flag if they come next. A legacy transaction cannot have zero
+    // inputs, so a zero where the input count would be always means segwit.
+    private static boolean readMarker(ByteBuffer cur, int start) throws TxDecodeException
+    {
+        require(cur, start, 1);
+        if (cur.get(cur.position()) != 0)
+            return false;
+        require(cur, start, 2);
+        int flag = cur.get(cur.position() + 1) & 0xff;
+        if (flag != 1)
+            throw new TxDecodeException("Unknown segwit flag " + flag, cur.position() + 1 - start, false);
+        cur.position(cur.position() + 2);
+        return true;
+    }
+
+    private static ByteBuffer range(ByteBuffer cur, int from, int to)
+    {
+        ByteBuffer range = cur.duplicate();
+        range.limit(to);
+        range.position(from);
+        return range;
+    }
+
+    private static void require(ByteBuffer cur, int start, long len) throws TxDecodeException
+    {
+        if (cur.remaining() < len)
+            throw new TxDecodeException("Unexpected end of data", cur.position() - start, true);
+    }
+
+    private static void skip(ByteBuffer cur, int start, int len) throws TxDecodeException
+    {
+        require(cur, start, len);
+        cur.position(cur.position() + len);
+    }
+
+    private static ByteBuffer slice(ByteBuffer cur, int len)
+    {
+        ByteBuffer slice = cur.slice();
+        slice.limit(len);
+        cur.position(cur.position() + len);
+        return slice;
+    }
+
+    private static long readVarInt(ByteBuffer cur, int start) throws TxDecodeException
+    {
+        require(cur, start, 1);
+        int first = cur.get() & 0xff;
+        if (first < 0xfd)
+            return first;
+        if (first == 0xfd) {
+            require(cur, start, 2);
+            return cur.getShort() & 0xffff;
+        }
+        if (first == 0xfe) {
+            require(cur, start, 4);
+            return cur.getInt() & 0xffffffffL;
+        }
+        require(cur, start, 8);
+        long value = cur.getLong();
+        if (value < 0)
+            throw new TxDecodeException("VarInt out of range", cur.position() - start - 9, false);
+        return value;
+    }
+
+    private static int readScriptLen(ByteBuffer cur, int start) throws TxDecodeException
+    {
+        int pos = cur.position();
+        long len = readVarInt(cur, start);
+        if (len > MAX_TX_SIZE)
+            throw new TxDecodeException("Script length " + len + " too large", pos - start, false);
+        return (int) len;
+    }
+
+    private static ByteBuffer readScript(ByteBuffer cur, int start) throws TxDecodeException
+    {
+        int len = readScriptLen(cur, start);
+        require(cur, start, len);
+        return slice(cur, len);
+    }
+
+    private static void checkCount(ByteBuffer cur, int start, long count, int minSize, String what)
+            throws TxDecodeException
+    {
+        if (count > MAX_TX_SIZE / minSize)
+            throw new TxDecodeException("Invalid " + what + " " + count, cur.position() - start, false);
+        require(cur, start, count * minSize);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.nio.ByteBuffer;
+
+public class TxEncoder {
+
+    private ByteBuffer scratch;
+
+    public TxEncoder()
+    {
+        this(1024);
+    }
+
+    public TxEncoder(int initialCapacity)
+    {
+        scratch = ByteBuffer.allocate(initialCapacity);
+    }
+
+    // Serializes into a scratch buffer that is reused between calls, growing it only when a
+    // transaction does not fit. The returned buffer is overwritten by the next call.
+    public ByteBuffer encode(Transaction tx, boolean unsigned)
+    {
+        int size = Transaction.serializedSize(tx, unsigned);
+        if(scratch.capacity() < size)
+            scratch = ByteBuffer.allocate(Math.max(size, scratch.capacity() * 2));
+        scratch.clear();
+        Transaction.serialize(tx, unsigned, scratch);
+        scratch.flip();
+        return scratch;
+    }
+}
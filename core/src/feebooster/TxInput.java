@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+public class TxInput {
+
+    private String txid;
+    private ByteBuffer txidBytes;
+    private int vout;
+    private byte[] script;
+    private ByteBuffer scriptSlice;
+    private int sequence;
+
+    // Witness stack, as arrays or as views into a decoded transaction
+    private byte[][] witness;
+    private ByteBuffer[] witnessSlices;
+
+    public TxInput(String txid, int vout, byte[] script, int sequence)
+    {
+        this.txid = txid;
+        this.vout = vout;
+        this.script = script;
+        this.sequence = sequence;
+    }
+
+    // Txid in serialized (little endian) byte order and script as views into a decoded transaction
+    public TxInput(ByteBuffer txidBytes, int vout, ByteBuffer script, int sequence)
+    {
+        this.txidBytes = txidBytes;
+        this.vout = vout;
+        this.scriptSlice = script;
+        this.sequence = sequence;
+    }
+
+    public String getTxid()
+    {
+        if(txid == null)
+            txid = Utils.bytesToHexReversed(txidBytes);
+        return txid;
+    }
+
+    public byte[] getTxidBytes()
+    {
+        if(txidBytes == null)
+            txidBytes = ByteBuffer.wrap(Utils.byteSwap(Utils.hexStringToByteArray(txid)));
+        byte[] bytes = new byte[32];
+        txidBytes.duplicate().get(bytes);
+        return bytes;
+    }
+
+    public int getVout()
+    {
+        return vout;
+    }
+
+    public byte[] getScript()
+    {
+        if(script == null)
+        {
+            script = new byte[scriptSlice.remaining()];
+            scriptSlice.duplicate().get(script);
+        }
+        return script;
+    }
+
+    public int getSequence()
+    {
+        return sequence;
+    }
+
+    public boolean hasWitness()
+    {
+        if(witness != null)
+            return witness.length > 0;
+        return witnessSlices != null && witnessSlices.length > 0;
+    }
+
+    // Returns the witness stack, empty if the input has none
+    public byte[][] getWitness()
+    {
+        if(witness == null)
+        {
+            if(witnessSlices == null)
+                return new byte[0][];
+            byte[][] items = new byte[witnessSlices.length][];
+            for(int i = 0; i < items.length; i++)
+            {
+                items[i] = new byte[witnessSlices[i].remaining()];
+                witnessSlices[i].duplicate().get(items[i]);
+            }
+            witness = items;
+        }
+        return witness;
+    }
+
+    public void setWitness(byte[][] witness)
+    {
+        this.witness = witness;
+        this.witnessSlices = null;
+    }
+
+    void setWitnessSlices(ByteBuffer[] witnessSlices)
+    {
+        this.witness = null;
+        this.witnessSlices = witnessSlices;
+    }
+
+    // Bytes the witness stack takes in a segwit serialization, 1 for an empty one
+    public static int witnessSize(TxInput in)
+    {
+        int count = in.witnessCount();
+        int size = Utils.varIntSize(count);
+        for(int i = 0; i < count; i++)
+        {
+            int len = in.witnessItemLength(i);
+            size += Utils.varIntSize(len) + len;
+        }
+        return size;
+    }
+
+    // Buffer must be in little endian order and have witnessSize bytes left
+    public static void serializeWitness(TxInput in, ByteBuffer out)
+    {
+        int count = in.witnessCount();
+        Utils.writeVarInt(out, count);
+        for(int i = 0; i < count; i++)
+        {
+            Utils.writeVarInt(out, in.witnessItemLength(i));
+            if(in.witness != null)
+                out.put(in.witness[i]);
+            else
+                out.put(in.witnessSlices[i].duplicate());
+        }
+    }
+
+    public static int serializedSize(TxInput in, boolean unsigned)
+    {
+        if(unsigned)
+            return 32 + 4 + 1 + 4;
+        int scriptLen = in.scriptLength();
+        return 32 + 4 + Utils.varIntSize(scriptLen) + scriptLen + 4;
+    }
+
+    public static byte[] serialize(TxInput in, boolean unsigned)
+    {
+        byte[] finalInput = new byte[serializedSize(in, unsigned)];
+        serialize(in, unsigned, ByteBuffer.wrap(finalInput).order(ByteOrder.LITTLE_ENDIAN));
+        return finalInput;
+    }
+
+    // Buffer must be in little endian order and have serializedSize bytes left
+    public static void serialize(TxInput in, boolean unsigned, ByteBuffer out)
+    {
+        if(in.txidBytes == null)
+            in.txidBytes = ByteBuffer.wrap(Utils.byteSwap(Utils.hexStringToByteArray(in.txid)));
+        out.put(in.txidBytes.duplicate());
+        out.putInt(in.vout);
+        if(unsigned)
+        {
+            out.put((byte) 0x00);
+        }
+        else
+        {
+            Utils.writeVarInt(out, in.scriptLength());
+            if(in.script != null)
+                out.put(in.script);
+            else
+                out.put(in.scriptSlice.duplicate());
+        }
+        out.putInt(in.sequence);
+    }
+
+    // The script without copying it out of a decoded transaction
+    ByteBuffer scriptView()
+    {
+        return script != null ? ByteBuffer.wrap(script) : scriptSlice.duplicate();
+    }
+
+    private int witnessCount()
+    {
+        if(witness != null)
+            return witness.length;
+        return witnessSlices == null ? 0 : witnessSlices.length;
+    }
+
+    private int witnessItemLength(int i)
+    {
+        return witness != null ? witness[i].length : witnessSlices[i].remaining();
+    }
+
+    private int scriptLength()
+    {
+        return script != null ? script.length : scriptSlice.remaining();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TxOutput {
+
+    private long value;
+    private byte[] script;
+    private ByteBuffer scriptSlice;
+    private ScriptType scriptType;
+    private byte[] hash160;
+    private volatile String address;
+
+    // Below this many outputs deriving addresses on one thread beats forking
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    public TxOutput(long value, byte[] script)
+    {
+        this.value = value;
+        this.script = script;
+    }
+
+    // Script as a view into a decoded transaction
+    public TxOutput(long value, ByteBuffer script)
+    {
+        this.value = value;
+        this.scriptSlice = script;
+    }
+
+    public long getValue()
+    {
+        return value;
+    }
+
+    public byte[] getScript()
+    {
+        if(script == null)
+        {
+            script = new byte[scriptSlice.remaining()];
+            scriptSlice.duplicate().get(script);
+        }
+        return script;
+    }
+
+    public ScriptType getScriptType()
+    {
+        if(scriptType == null)
+            scriptType = ScriptType.classify(getScript());
+        return scriptType;
+    }
+
+    // Hash160 the address is made from, or null for nonstandard outputs
+    public byte[] getHash160()
+    {
+        if(hash160 == null)
+        {
+            byte[] script = getScript();
+            switch(getScriptType())
+            {
+                case P2PKH:
+                    hash160 = Arrays.copyOfRange(script, 3, 23);
+                    break;
+                case P2SH:
+                case P2WPKH:
+                    hash160 = Arrays.copyOfRange(script, 2, 22);
+                    break;
+                case P2PK_UNCOMPRESSED:
+                    hash160 = Hashing.hash160(script, 1, 65);
+                    break;
+                case P2PK_COMPRESSED:
+                    hash160 = Hashing.hash160(script, 1, 33);
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return hash160;
+    }
+
+    // Derived once and then cached, the script never changes
+    public String getAddress()
+    {
+        String addr = address;
+        if(addr == null)
+        {
+            if(getScriptType().hasAddress())
+                addr = Utils.base58Encode(scriptType.getAddressVersion(), getHash160());
+            else
+                addr = "Non Standard Output";
+            address = addr;
+        }
+        return addr;
+    }
+
+    // Derives and caches the address of every output, in parallel for large transactions
+    public static void deriveAddresses(Transaction tx)
+    {
+        deriveAddresses(Collections.singletonList(tx));
+    }
+
+    public static void deriveAddresses(List<Transaction> txs)
+    {
+        Metrics.Span span = Metrics.span("addresses");
+        List<TxOutput> outputs = new ArrayList<TxOutput>();
+        for(Transaction tx : txs)
+            outputs.addAll(tx.getOutputs());
+        if(outputs.size() < PARALLEL_THRESHOLD)
+        {
+            for(TxOutput out : outputs)
+                out.getAddress();
+        }
+        else
+        {
+            outputs.parallelStream().forEach(TxOutput::getAddress);
+        }
+        Metrics.end(span);
+        Metrics.count("addresses.outputs", outputs.size());
+    }
+
+    public void decreaseValueBy(long decrease)
+    {
+        value -= decrease;
+    }
+
+    public static int serializedSize(TxOutput out)
+    {
+        int scriptLen = out.scriptLength();
+        return 8 + Utils.varIntSize(scriptLen) + scriptLen;
+    }
+
+    public static byte[] serialize(TxOutput out)
+    {
+        byte[] finalOutput = new byte[serializedSize(out)];
+        serialize(out, ByteBuffer.wrap(finalOutput).order(ByteOrder.LITTLE_ENDIAN));
+        return finalOutput;
+    }
+
+    // Buffer must be in little endian order and have serializedSize bytes left
+    public static void serialize(TxOutput out, ByteBuffer buf)
+    {
+        buf.putLong(out.value);
+        Utils.writeVarInt(buf, out.scriptLength());
+        if(out.script != null)
+            buf.put(out.script);
+        else
+            buf.put(out.scriptSlice.duplicate());
+    }
+
+    // The script without copying it out of a decoded transaction
+    ByteBuffer scriptView()
+    {
+        return script != null ? ByteBuffer.wrap(script) : scriptSlice.duplicate();
+    }
+
+    private int scriptLength()
+    {
+        return script != null ? script.length : scriptSlice.remaining();
+    }
+}
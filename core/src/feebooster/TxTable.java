@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collection;
+
+// Many transactions held as columns of primitives instead of an object per input and output.
+// Txids are four longs in serialized byte order, and every script and witness goes into one
+// shared buffer. A transaction costs about 100 bytes plus 56 per input, 16 per output and its
+// scripts, against several objects per input and output for Transaction.
+// Not thread safe.
+public class TxTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Per transaction, txids and wtxids take four slots each
+    private int count = 0;
+    private long[] txids = new long[INITIAL_CAPACITY * 4];
+    private long[] wtxids = new long[INITIAL_CAPACITY * 4];
+    private int[] versions = new int[INITIAL_CAPACITY];
+    private int[] locktimes = new int[INITIAL_CAPACITY];
+    private long[] fees = new long[INITIAL_CAPACITY];
+    private long[] totalAmtPres = new long[INITIAL_CAPACITY];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int[] strippedSizes = new int[INITIAL_CAPACITY];
+
+    // Where each transaction's inputs and outputs start, one extra entry marks the end
+    private int[] firstInput = new int[INITIAL_CAPACITY + 1];
+    private int[] firstOutput = new int[INITIAL_CAPACITY + 1];
+
+    // Per input. A script runs from its start to the witness start, the serialized witness
+    // stack from there to the witness end, empty if the input has none.
+    private int numInputs = 0;
+    private long[] prevTxids = new long[INITIAL_CAPACITY * 4];
+    private int[] vouts = new int[INITIAL_CAPACITY];
+    private int[] sequences = new int[INITIAL_CAPACITY];
+    private int[] inScripts = new int[INITIAL_CAPACITY];
+    private int[] inWitnesses = new int[INITIAL_CAPACITY];
+    private int[] inWitnessEnds = new int[INITIAL_CAPACITY];
+
+    // Per output
+    private int numOutputs = 0;
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int[] outScripts = new int[INITIAL_CAPACITY];
+    private int[] outScriptEnds = new int[INITIAL_CAPACITY];
+
+    // Only ever appended to, so slices handed out stay valid after it grows
+    private byte[] scripts = new byte[INITIAL_CAPACITY * 64];
+    private int scriptsUsed = 0;
+
+    // Open addressing from txid to index + 1, keyed on the txid's first long
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+
+    public int size()
+    {
+        return count;
+    }
+
+    // Returns the transaction's index. A transaction already held keeps its first copy.
+    public int add(Transaction tx)
+    {
+        byte[] hash = tx.getHashBytes();
+        if(hash == null)
+            throw new IllegalArgumentException("Transaction has no txid");
+        ByteBuffer txid = ByteBuffer.wrap(hash).order(ByteOrder.LITTLE_ENDIAN);
+        int existing = find(txid.getLong(0), txid.getLong(8), txid.getLong(16), txid.getLong(24));
+        if(existing >= 0)
+            return existing;
+
+        int nIn = tx.getInputs().size();
+        int nOut = tx.getOutputs().size();
+        ensureTxCapacity(count + 1);
+        ensureInputCapacity(numInputs + nIn);
+        ensureOutputCapacity(numOutputs + nOut);
+
+        int i = count;
+        putHash(txids, i, hash);
+        putHash(wtxids, i, tx.getWitnessHashBytes());
+        versions[i] = tx.getVersion();
+        locktimes[i] = tx.getLocktime();
+        fees[i] = tx.getFee();
+        totalAmtPres[i] = tx.getTotalAmtPre();
+        sizes[i] = (int) tx.getSize();
+        strippedSizes[i] = (int) tx.getStrippedSize();
+
+        firstInput[i] = numInputs;
+        for(TxInput input : tx.getInputs())
+        {
+            int in = numInputs++;
+            putHash(prevTxids, in, input.getTxidBytes());
+            vouts[in] = input.getVout();
+            sequences[in] = input.getSequence();
+            inScripts[in] = append(input.scriptView());
+            inWitnesses[in] = scriptsUsed;
+            if(input.hasWitness())
+            {
+                ensureScriptCapacity(scriptsUsed + TxInput.witnessSize(input));
+                ByteBuffer out = ByteBuffer.wrap(scripts, scriptsUsed, scripts.length - scriptsUsed)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                TxInput.serializeWitness(input, out);
+                scriptsUsed = out.position();
+            }
+            inWitnessEnds[in] = scriptsUsed;
+        }
+        firstInput[i + 1] = numInputs;
+
+        firstOutput[i] = numOutputs;
+        for(TxOutput output : tx.getOutputs())
+        {
+            int out = numOutputs++;
+            values[out] = output.getValue();
+            outScripts[out] = append(output.scriptView());
+            outScriptEnds[out] = scriptsUsed;
+        }
+        firstOutput[i + 1] = numOutputs;
+
+        count++;
+        insert(i);
+        return i;
+    }
+
+    public void addAll(Collection<Transaction> txs)
+    {
+        for(Transaction tx : txs)
+            add(tx);
+    }
+
+    // Builds a Transaction whose txids are its own and whose scripts are views into this table
+    public Transaction get(int i)
+    {
+        checkIndex(i);
+        Transaction tx = new Transaction();
+        tx.setVersion(versions[i]);
+        for(int in = firstInput[i]; in < firstInput[i + 1]; in++)
+        {
+            ByteBuffer txid = ByteBuffer.wrap(hashBytes(prevTxids, in));
+            TxInput input = new TxInput(txid, vouts[in], slice(inScripts[in], inWitnesses[in]), sequences[in]);
+            if(inWitnessEnds[in] > inWitnesses[in])
+                input.setWitnessSlices(witnessSlices(in));
+            tx.addInput(input);
+        }
+        long outAmt = 0;
+        for(int out = firstOutput[i]; out < firstOutput[i + 1]; out++)
+        {
+            tx.addOutput(new TxOutput(values[out], slice(outScripts[out], outScriptEnds[out])));
+            outAmt += values[out];
+        }
+        tx.setOutAmt(outAmt);
+        tx.setLocktime(locktimes[i]);
+        tx.setFee(fees[i]);
+        tx.setTotalAmtPre(totalAmtPres[i]);
+        tx.setSize(sizes[i]);
+        tx.setStrippedSize(strippedSizes[i]);
+        byte[] wtxid = hashBytes(wtxids, i);
+        byte[] txid = hashBytes(txids, i);
+        tx.setHashBytes(txid, Arrays.equals(txid, wtxid) ? null : wtxid);
+        return tx;
+    }
+
+    // Index of the transaction with this txid, or -1 if it is not held
+    public int indexOf(String txid)
+    {
+        byte[] bytes;
+        try {
+            bytes = Utils.byteSwap(Utils.hexStringToByteArray(txid));
+        } catch(IllegalArgumentException e) {
+            return -1;
+        }
+        if(bytes.length != 32)
+            return -1;
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return find(buf.getLong(0), buf.getLong(8), buf.getLong(16), buf.getLong(24));
+    }
+
+    public String getTxid(int i)
+    {
+        checkIndex(i);
+        return Utils.bytesToHexReversed(ByteBuffer.wrap(hashBytes(txids, i)));
+    }
+
+    public String getWitnessTxid(int i)
+    {
+        checkIndex(i);
+        return Utils.bytesToHexReversed(ByteBuffer.wrap(hashBytes(wtxids, i)));
+    }
+
+    public int getVersion(int i)
+    {
+        checkIndex(i);
+        return versions[i];
+    }
+
+    public int getLocktime(int i)
+    {
+        checkIndex(i);
+        return locktimes[i];
+    }
+
+    public long getFee(int i)
+    {
+        checkIndex(i);
+        return fees[i];
+    }
+
+    public void setFee(int i, long fee)
+    {
+        checkIndex(i);
+        fees[i] = fee;
+    }
+
+    public long getSize(int i)
+    {
+        checkIndex(i);
+        return sizes[i];
+    }
+
+    public long getVsize(int i)
+    {
+        checkIndex(i);
+        return ((long) strippedSizes[i] * 3 + sizes[i] + 3) / 4;
+    }
+
+    public int inputCount(int i)
+    {
+        checkIndex(i);
+        return firstInput[i + 1] - firstInput[i];
+    }
+
+    public int outputCount(int i)
+    {
+        checkIndex(i);
+        return firstOutput[i + 1] - firstOutput[i];
+    }
+
+    public String getPrevTxid(int i, int input)
+    {
+        int in = inputIndex(i, input);
+        return Utils.bytesToHexReversed(ByteBuffer.wrap(hashBytes(prevTxids, in)));
+    }
+
+    public int getVout(int i, int input)
+    {
+        return vouts[inputIndex(i, input)];
+    }
+
+    public int getSequence(int i, int input)
+    {
+        return sequences[inputIndex(i, input)];
+    }
+
+    public long getValue(int i, int output)
+    {
+        return values[outputIndex(i, output)];
+    }
+
+    public ByteBuffer getOutputScript(int i, int output)
+    {
+        int out = outputIndex(i, output);
+        return slice(outScripts[out], outScriptEnds[out]);
+    }
+
+    public long getOutAmt(int i)
+    {
+        checkIndex(i);
+        long outAmt = 0;
+        for(int out = firstOutput[i]; out < firstOutput[i + 1]; out++)
+            outAmt += values[out];
+        return outAmt;
+    }
+
+    // Value of an output of a held transaction, or -1 if the transaction or output is not held
+    public long getOutputValue(String txid, int vout)
+    {
+        int i = indexOf(txid);
+        if(i < 0 || vout < 0 || vout >= outputCount(i))
+            return -1;
+        return values[firstOutput[i] + vout];
+    }
+
+    // Total value of the outputs a transaction spends, or -1 if any of them is not held
+    public long inputValue(int i)
+    {
+        checkIndex(i);
+        long total = 0;
+        for(int in = firstInput[i]; in < firstInput[i + 1]; in++)
+        {
+            int parent = find(prevTxids[in * 4], prevTxids[in * 4 + 1], prevTxids[in * 4 + 2], prevTxids[in * 4 + 3]);
+            if(parent < 0 || vouts[in] < 0 || vouts[in] >= outputCount(parent))
+                return -1;
+            total += values[firstOutput[parent] + vouts[in]];
+        }
+        return total;
+    }
+
+    // Drops spare capacity once loading is done
+    public void trimToSize()
+    {
+        txids = Arrays.copyOf(txids, count * 4);
+        wtxids = Arrays.copyOf(wtxids, count * 4);
+        versions = Arrays.copyOf(versions, count);
+        locktimes = Arrays.copyOf(locktimes, count);
+        fees = Arrays.copyOf(fees, count);
+        totalAmtPres = Arrays.copyOf(totalAmtPres, count);
+        sizes = Arrays.copyOf(sizes, count);
+        strippedSizes = Arrays.copyOf(strippedSizes, count);
+        firstInput = Arrays.copyOf(firstInput, count + 1);
+        firstOutput = Arrays.copyOf(firstOutput, count + 1);
+        prevTxids = Arrays.copyOf(prevTxids, numInputs * 4);
+        vouts = Arrays.copyOf(vouts, numInputs);
+        sequences = Arrays.copyOf(sequences, numInputs);
+        inScripts = Arrays.copyOf(inScripts, numInputs);
+        inWitnesses = Arrays.copyOf(inWitnesses, numInputs);
+        inWitnessEnds = Arrays.copyOf(inWitnessEnds, numInputs);
+        values = Arrays.copyOf(values, numOutputs);
+        outScripts = Arrays.copyOf(outScripts, numOutputs);
+        outScriptEnds = Arrays.copyOf(outScriptEnds, numOutputs);
+        scripts = Arrays.copyOf(scripts, scriptsUsed);
+    }
+
+    private void checkIndex(int i)
+    {
+        if(i < 0 || i >= count)
+            throw new IndexOutOfBoundsException("Transaction " + i + " of " + count);
+    }
+
+    private int inputIndex(int i, int input)
+    {
+        if(input < 0 || input >= inputCount(i))
+            throw new IndexOutOfBoundsException("Input " + input + " of " + inputCount(i));
+        return firstInput[i] + input;
+    }
+
+    private int outputIndex(int i, int output)
+    {
+        if(output < 0 || output >= outputCount(i))
+            throw new IndexOutOfBoundsException("Output " + output + " of " + outputCount(i));
+        return firstOutput[i] + output;
+    }
+
+    private ByteBuffer slice(int from, int to)
+    {
+        return ByteBuffer.wrap(scripts, from, to - from).slice();
+    }
+
+    // Splits a stored witness stack back into one view per item
+    private ByteBuffer[] witnessSlices(int in)
+    {
+        ByteBuffer cur = slice(inWitnesses[in], inWitnessEnds[in]).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer[] items = new ByteBuffer[(int) readVarInt(cur)];
+        for(int item = 0; item < items.length; item++)
+        {
+            int len = (int) readVarInt(cur);
+            ByteBuffer slice = cur.slice();
+            slice.limit(len);
+            cur.position(cur.position() + len);
+            items[item] = slice;
+        }
+        return items;
+    }
+
+    // Only reads what add wrote, so no bounds checks beyond the buffer's own
+    private static long readVarInt(ByteBuffer cur)
+    {
+        int first = cur.get() & 0xff;
+        if(first < 0xfd)
+            return first;
+        if(first == 0xfd)
+            return cur.getShort() & 0xffff;
+        if(first == 0xfe)
+            return cur.getInt() & 0xffffffffL;
+        return cur.getLong();
+    }
+
+    private int append(ByteBuffer script)
+    {
+        int start = scriptsUsed;
+        int len = script.remaining();
+        ensureScriptCapacity(start + len);
+        script.get(scripts, start, len);
+        scriptsUsed += len;
+        return start;
+    }
+
+    private static void putHash(long[] column, int row, byte[] hash)
+    {
+        ByteBuffer buf = ByteBuffer.wrap(hash).order(ByteOrder.LITTLE_ENDIAN);
+        for(int k = 0; k < 4; k++)
+            column[row * 4 + k] = buf.getLong(k * 8);
+    }
+
+    private static byte[] hashBytes(long[] column, int row)
+    {
+        byte[] hash = new byte[32];
+        ByteBuffer buf = ByteBuffer.wrap(hash).order(ByteOrder.LITTLE_ENDIAN);
+        for(int k = 0; k < 4; k++)
+            buf.putLong(column[row * 4 + k]);
+        return hash;
+    }
+
+    private int find(long a, long b, long c, long d)
+    {
+        int mask = index.length - 1;
+        for(int slot = mix(a) & mask; index[slot] != 0; slot = (slot + 1) & mask)
+        {
+            int i = index[slot] - 1;
+            if(txids[i * 4] == a && txids[i * 4 + 1] == b && txids[i * 4 + 2] == c && txids[i * 4 + 3] == d)
+                return i;
+        }
+        return -1;
+    }
+
+    // Keeps the table at most half full
+    private void insert(int i)
+    {
+        if(count * 2 > index.length)
+        {
+            index = new int[index.length * 2];
+            for(int j = 0; j < count; j++)
+                place(j);
+        }
+        else
+        {
+            place(i);
+        }
+    }
+
+    private void place(int i)
+    {
+        int mask = index.length - 1;
+        int slot = mix(txids[i * 4]) & mask;
+        while(index[slot] != 0)
+            slot = (slot + 1) & mask;
+        index[slot] = i + 1;
+    }
+
+    // Txids are already uniformly distributed, folding the halves is enough
+    private static int mix(long h)
+    {
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void ensureTxCapacity(int needed)
+    {
+        if(needed <= versions.length)
+            return;
+        int cap = Math.max(needed, versions.length * 2);
+        txids = Arrays.copyOf(txids, cap * 4);
+        wtxids = Arrays.copyOf(wtxids, cap * 4);
+        versions = Arrays.copyOf(versions, cap);
+        locktimes = Arrays.copyOf(locktimes, cap);
+        fees = Arrays.copyOf(fees, cap);
+        totalAmtPres = Arrays.copyOf(totalAmtPres, cap);
+        sizes = Arrays.copyOf(sizes, cap);
+        strippedSizes = Arrays.copyOf(strippedSizes, cap);
+        firstInput = Arrays.copyOf(firstInput, cap + 1);
+        firstOutput = Arrays.copyOf(firstOutput, cap + 1);
+    }
+
+    private void ensureInputCapacity(int needed)
+    {
+        if(needed <= vouts.length)
+            return;
+        int cap = Math.max(needed, vouts.length * 2);
+        prevTxids = Arrays.copyOf(prevTxids, cap * 4);
+        vouts = Arrays.copyOf(vouts, cap);
+        sequences = Arrays.copyOf(sequences, cap);
+        inScripts = Arrays.copyOf(inScripts, cap);
+        inWitnesses = Arrays.copyOf(inWitnesses, cap);
+        inWitnessEnds = Arrays.copyOf(inWitnessEnds, cap);
+    }
+
+    private void ensureOutputCapacity(int needed)
+    {
+        if(needed <= values.length)
+            return;
+        int cap = Math.max(needed, values.length * 2);
+        values = Arrays.copyOf(values, cap);
+        outScripts = Arrays.copyOf(outScripts, cap);
+        outScriptEnds = Arrays.copyOf(outScriptEnds, cap);
+    }
+
+    private void ensureScriptCapacity(int needed)
+    {
+        if(needed <= scripts.length)
+            return;
+        scripts = Arrays.copyOf(scripts, Math.max(needed, scripts.length * 2));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+
+public class Utils {
+
+    public static long parseVarInt(byte[] bytes, int offset)
+    {
+        byte[] varint;
+        if(getUnsignedByte(bytes[offset]) == 0xfd)
+        {
+            varint = Arrays.copyOfRange(bytes, offset + 1, offset + 3);
+            ByteBuffer varintwrap = ByteBuffer.wrap(varint).order(ByteOrder.LITTLE_ENDIAN);
+            return (long) getUnsignedShortBuf(varintwrap);
+        }
+        else if(getUnsignedByte(bytes[offset]) == 0xfe)
+        {
+            varint = Arrays.copyOfRange(bytes, offset + 1, offset + 5);
+            ByteBuffer varintwrap = ByteBuffer.wrap(varint).order(ByteOrder.LITTLE_ENDIAN);
+            return (long) getUnsignedIntBuf(varintwrap);
+        }
+        else if(getUnsignedByte(bytes[offset]) == 0xff)
+        {
+            varint = Arrays.copyOfRange(bytes, offset + 1, offset + 9);
+            ByteBuffer varintwrap = ByteBuffer.wrap(varint).order(ByteOrder.LITTLE_ENDIAN);
+            return varintwrap.getLong();
+        }
+        else
+        {
+            varint = new byte[]{bytes[offset]};
+            ByteBuffer varintwrap = ByteBuffer.wrap(varint).order(ByteOrder.LITTLE_ENDIAN);
+            return (long) getUnsignedByteBuf(varintwrap);
+        }
+    }
+
+    public static byte[] toVarInt(long varint)
+    {
+        byte[] out = new byte[varIntSize(varint)];
+        writeVarInt(ByteBuffer.wrap(out).order(ByteOrder.LITTLE_ENDIAN), varint);
+        return out;
+    }
+
+    public static int varIntSize(long varint)
+    {
+        if(varint >= 0 && varint <= 252)
+            return 1;
+        else if(varint > 252 && varint <= 0xffff)
+            return 3;
+        else if(varint > 0xffff && varint <= 0xffffffffL)
+            return 5;
+        else
+            return 9;
+    }
+
+    // Buffer must be in little endian order
+    public static void writeVarInt(ByteBuffer buf, long varint)
+    {
+        if(varint >= 0 && varint <= 252)
+        {
+            buf.put((byte)varint);
+        }
+        else if(varint > 252 && varint <= 0xffff)
+        {
+            buf.put((byte)0xfd);
+            buf.putShort((short)varint);
+        }
+        else if(varint > 0xffff && varint <= 0xffffffffL)
+        {
+            buf.put((byte)0xfe);
+            buf.putInt((int)varint);
+        }
+        else
+        {
+            buf.put((byte)0xff);
+            buf.putLong(varint);
+        }
+    }
+
+    public static int varIntLen(byte[] bytes, int offset)
+    {
+        if(getUnsignedByte(bytes[offset]) == 0xfd)
+            return 3;
+        else if(getUnsignedByte(bytes[offset]) == 0xfe)
+            return 5;
+        else if(getUnsignedByte(bytes[offset]) == 0xff)
+            return 9;
+        else
+            return 1;
+    }
+
+    public static byte[] hexStringToByteArray(CharSequence s) {
+        return Hex.decode(s);
+    }
+
+    public static byte[] byteSwap(byte[] bytes)
+    {
+        for(int i = 0; i < bytes.length / 2; i++)
+        {
+            byte temp = bytes[i];
+            bytes[i] = bytes[bytes.length - i - 1];
+            bytes[bytes.length - i - 1] = temp;
+        }
+        return bytes;
+    }
+
+    final private static char[] hexArray = "0123456789ABCDEF".toCharArray();
+    public static String bytesToHex(byte[] bytes) {
+        return Hex.encode(bytes);
+    }
+
+    // Hex of the remaining bytes in reverse order, the way txids are displayed
+    public static String bytesToHexReversed(ByteBuffer bytes) {
+        int pos = bytes.position();
+        int len = bytes.remaining();
+        char[] hexChars = new char[len * 2];
+        for ( int j = 0; j < len; j++ ) {
+            int v = bytes.get(pos + len - 1 - j) & 0xFF;
+            hexChars[j * 2] = hexArray[v >>> 4];
+            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
+        }
+        return new String(hexChars);
+    }
+
+    public static String base58Encode(byte version, byte[] payload) {
+        return Base58.encodeChecked(version, payload);
+    }
+
+    public static byte[] byteArrToPrimitive(Object[] bytes)
+    {
+        byte[] outBytes = new byte[bytes.length];
+        for(int i = 0; i < bytes.length; i++)
+        {
+            outBytes[i] = (byte)bytes[i];
+        }
+        return outBytes;
+    }
+
+    public static short getUnsignedByteBuf(ByteBuffer bb)
+    {
+        return ((short)(bb.get() & 0xff));
+    }
+
+    public static int getUnsignedShortBuf(ByteBuffer bb)
+    {
+        return (bb.getShort() & 0xffff);
+    }
+
+    public static long getUnsignedIntBuf(ByteBuffer bb)
+    {
+        return ((long)bb.getInt() & 0xffffffffL);
+    }
+
+    public static short getUnsignedByte(byte b)
+    {
+        return ((short)(b & 0xff));
+    }
+
+    // Callers that only need a few fields should use ApiClient.getFields instead of building the whole object
+    public static JSONObject getFromAnAPI(String url, String method)
+    {
+        try {
+            return new JSONObject(ApiClient.getString(url, method));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return new JSONObject("{\"Error\":\"Failed\"}");
+    }
+
+    public static boolean validateAddress(String addr) {
+        if (addr.length() < 26 || addr.length() > 35) return false;
+        byte[] decoded = Base58.decodeChecked(addr);
+        return decoded != null && decoded.length == 21;
+    }
+
+    // Decodes any length of base58, checksum included. Returns null if the input is not base58
+    public static byte[] base58Decode(String input) {
+        return Base58.decode(input);
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Base58Test {
+
+    private static final String ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+
+    // From Bitcoin Core's base58_encode_decode.json
+    private static final String[][] VECTORS = {
+            {"", ""},
+            {"61", "2g"},
+            {"626262", "a3gV"},
+            {"636363", "aPEr"},
+            {"73696d706c792061206c6f6e6720737472696e67", "2cFupjhnEsSn59qHXstmK2ffpLv2"},
+            {"00eb15231dfceb60925886b67d065299925915aeb172c06647", "1NS17iag9jJgTHD1VXjvLCEnZuQ3rJDE9L"},
+            {"516b6fcd0f", "ABnLTmg"},
+            {"bf4f89001e670274dd", "3SEo3LWLoPntC"},
+            {"572e4794", "3EFU7m"},
+            {"ecac89cad93923c02321", "EJDM8drfXA6uyA"},
+            {"10c8511e", "Rt5zm"},
+            {"00000000000000000000", "1111111111"},
+    };
+
+    @Test
+    public void matchesKnownVectors()
+    {
+        for(String[] vector : VECTORS)
+        {
+            byte[] bytes = vector[0].isEmpty() ? new byte[0] : Hex.decode(vector[0]);
+            assertEquals(vector[1], Base58.encode(bytes));
+            assertArrayEquals(vector[1], bytes, Base58.decode(vector[1]));
+        }
+    }
+
+    @Test
+    public void encodesMainnetAddresses()
+    {
+        byte[] hash160 = Hex.decode(TestVectors.GENESIS_HASH160);
+        assertEquals(TestVectors.GENESIS_ADDRESS, Base58.encodeChecked((byte) 0x00, hash160));
+
+        byte[] decoded = Base58.decodeChecked(TestVectors.GENESIS_ADDRESS);
+        assertEquals(21, decoded.length);
+        assertEquals(0x00, decoded[0]);
+        assertArrayEquals(hash160, Arrays.copyOfRange(decoded, 1, 21));
+
+        // The example P2SH address of the Bitcoin wiki
+        String p2sh = "3J98t1WpEZ73CNmQviecrnyiWrnqRhWNLy";
+        decoded = Base58.decodeChecked(p2sh);
+        assertEquals(21, decoded.length);
+        assertEquals(0x05, decoded[0]);
+        assertEquals(p2sh, Base58.encodeChecked(decoded[0], Arrays.copyOfRange(decoded, 1, 21)));
+    }
+
+    @Test
+    public void rejectsBadChecksumAndCharacters()
+    {
+        String address = TestVectors.GENESIS_ADDRESS;
+        char last = address.charAt(address.length() - 1);
+        String tampered = address.substring(0, address.length() - 1) + (last == 'a' ? 'b' : 'a');
+        assertNull(Base58.decodeChecked(tampered));
+        assertNull(Base58.decodeChecked("1111"));
+        for(char c : new char[] {'0', 'O', 'I', 'l', '+', '\u00e9'})
+            assertNull(Base58.decode("1A" + c + "z"));
+    }
+
+    @Test
+    public void limbsCarryLikeBigInteger()
+    {
+        // Values either side of the limb bases, where carries between limbs start
+        long[] edges = {57, 58, 58L * 58 * 58 * 58 * 58 - 1, 58L * 58 * 58 * 58 * 58, 0xffffffffL, 0x100000000L,
+                Long.MAX_VALUE};
+        for(long edge : edges)
+            assertMatchesReference(BigInteger.valueOf(edge).toByteArray());
+
+        Random rand = new Random(58);
+        for(int i = 0; i < 2000; i++)
+        {
+            byte[] bytes = new byte[rand.nextInt(80)];
+            rand.nextBytes(bytes);
+            // Runs of leading zeros and of 0xff, which carry through every limb
+            int zeros = bytes.length == 0 ? 0 : rand.nextInt(Math.min(bytes.length, 4) + 1);
+            Arrays.fill(bytes, 0, zeros, (byte) 0);
+            if(i % 10 == 0)
+                Arrays.fill(bytes, zeros, bytes.length, (byte) 0xff);
+            assertMatchesReference(bytes);
+        }
+    }
+
+    @Test
+    public void encodesSlice()
+    {
+        byte[] padded = Hex.decode("ff00eb15231dfceb60925886b67d065299925915aeb172c06647ff");
+        assertEquals("1NS17iag9jJgTHD1VXjvLCEnZuQ3rJDE9L", Base58.encode(padded, 1, padded.length - 2));
+    }
+
+    private static void assertMatchesReference(byte[] bytes)
+    {
+        String expected = reference(bytes);
+        assertEquals(Hex.encode(bytes), expected, Base58.encode(bytes));
+        assertArrayEquals(expected, bytes, Base58.decode(expected));
+    }
+
+    // Plain repeated division, slow but obviously right
+    private static String reference(byte[] bytes)
+    {
+        StringBuilder sb = new StringBuilder();
+        BigInteger value = new BigInteger(1, bytes);
+        BigInteger base = BigInteger.valueOf(58);
+        while(value.signum() > 0)
+        {
+            BigInteger[] qr = value.divideAndRemainder(base);
+            sb.append(ALPHABET.charAt(qr[1].intValue()));
+            value = qr[0];
+        }
+        for(int i = 0; i < bytes.length && bytes[i] == 0; i++)
+            sb.append('1');
+        return sb.reverse().toString();
+    }
+}
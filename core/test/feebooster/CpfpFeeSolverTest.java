@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CpfpFeeSolverTest {
+
+    @Test
+    public void liftsParentAndChildToTarget()
+    {
+        CpfpFeeSolver solver = new CpfpFeeSolver(10);
+        assertTrue(solver.add(200, 200));
+        assertEquals(10 * (200 + 110) - 200, solver.childFee(110));
+        assertEquals(10.0, solver.effectiveRate(110, solver.childFee(110)), 0.0);
+    }
+
+    @Test
+    public void sumsEveryParentBelowTarget()
+    {
+        CpfpFeeSolver solver = new CpfpFeeSolver(20);
+        assertTrue(solver.add(150, 300));
+        assertTrue(solver.add(250, 1000));
+        assertEquals(2, solver.getMemberCount());
+        assertEquals(400, solver.getPackageSize());
+        assertEquals(1300, solver.getPackageFee());
+        assertEquals(20 * (400 + 200) - 1300, solver.childFee(200));
+    }
+
+    @Test
+    public void leavesOutParentsAlreadyAtTarget()
+    {
+        CpfpFeeSolver solver = new CpfpFeeSolver(10);
+        assertFalse(solver.add(100, 1000));
+        assertFalse(solver.add(100, 5000));
+        assertEquals(0, solver.getMemberCount());
+
+        // With nothing to lift the child still pays the target for itself
+        assertEquals(10 * 150, solver.childFee(150));
+    }
+
+    @Test
+    public void sizesSignedP2pkhChildren()
+    {
+        // 148 bytes per compressed P2PKH input, 34 for the P2PKH output, 10 for the rest
+        assertEquals(192, CpfpFeeSolver.childSize(1));
+        assertEquals(340, CpfpFeeSolver.childSize(2));
+    }
+
+    @Test
+    public void pricesChildOfGenesisCoinbase() throws TxDecodeException
+    {
+        Transaction parent = TxDecoder.decode(TestVectors.bytes(TestVectors.GENESIS_COINBASE));
+        parent.setFee(0);
+
+        // The parent's only output is a bare uncompressed P2PK, spent by a lone signature
+        Transaction child = Booster.cpfpChildAtRate(Collections.singletonList(parent), Collections.singletonList(0),
+                5, TestVectors.GENESIS_ADDRESS);
+        long childSize = 10 + (32 + 4 + 1 + 73 + 4) + 34;
+        assertEquals(childSize, SizeEstimator.estimate(child, Booster.spentOutputs(Collections.singletonList(parent),
+                Collections.singletonList(0))).getVsize());
+        assertEquals(5000000000L - 5 * (204 + childSize), child.getOutAmt());
+    }
+
+    @Test
+    public void countsSharedParentOnce() throws TxDecodeException
+    {
+        Transaction parent = TxDecoder.decode(TestVectors.bytes(TestVectors.SEGWIT));
+        parent.setFee(261);
+        CpfpFeeSolver solver = Booster.packageSolver(Arrays.asList(parent, parent), 10);
+        assertEquals(1, solver.getMemberCount());
+        assertEquals(261, solver.getPackageSize());
+        assertEquals(261, solver.getPackageFee());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ScriptTypeTest {
+
+    @Test
+    public void classifiesStandardScripts()
+    {
+        assertEquals(ScriptType.P2PKH, ScriptType.classify(Hex.decode("76a9148280b37df378db99f66f85c95a783a76ac7a6d5988ac")));
+        assertEquals(ScriptType.P2SH, ScriptType.classify(Hex.decode("a914" + TestVectors.GENESIS_HASH160 + "87")));
+        assertEquals(ScriptType.P2WPKH, ScriptType.classify(Hex.decode("0014" + TestVectors.GENESIS_HASH160)));
+        assertEquals(ScriptType.P2WSH, ScriptType.classify(Hex.decode("0020" + TestVectors.SEGWIT_TXID)));
+        assertEquals(ScriptType.NONSTANDARD, ScriptType.classify(new byte[0]));
+    }
+
+    @Test
+    public void classifiesGenesisOutputAsUncompressedP2pk() throws TxDecodeException
+    {
+        Transaction tx = TxDecoder.decode(TestVectors.bytes(TestVectors.GENESIS_COINBASE));
+        assertEquals(ScriptType.P2PK_UNCOMPRESSED, ScriptType.classify(tx.getOutputs().get(0).getScript()));
+    }
+
+    @Test
+    public void compressedP2pkNeedsA33BytePush()
+    {
+        byte[] script = compressedP2pk((byte) 0x02);
+        assertEquals(ScriptType.P2PK_COMPRESSED, ScriptType.classify(script));
+        assertEquals(ScriptType.P2PK_COMPRESSED, ScriptType.classify(compressedP2pk((byte) 0x03)));
+
+        // Same length but not a push of 0x21 bytes
+        for(int first : new int[] {0x20, 0x22, 0x4c, 0x41})
+        {
+            script[0] = (byte) first;
+            assertEquals(ScriptType.NONSTANDARD, ScriptType.classify(script));
+        }
+
+        // An uncompressed key prefix in a compressed sized push
+        assertEquals(ScriptType.NONSTANDARD, ScriptType.classify(compressedP2pk((byte) 0x04)));
+    }
+
+    @Test
+    public void onlyLegacyTypesHaveAddresses()
+    {
+        assertTrue(ScriptType.P2PKH.hasAddress());
+        assertTrue(ScriptType.P2SH.hasAddress());
+        assertFalse(ScriptType.P2WPKH.hasAddress());
+        assertFalse(ScriptType.NONSTANDARD.hasAddress());
+        assertEquals(0x05, ScriptType.P2SH.getAddressVersion());
+    }
+
+    // <33 byte key> OP_CHECKSIG with the given key prefix
+    private static byte[] compressedP2pk(byte prefix)
+    {
+        byte[] script = new byte[35];
+        Arrays.fill(script, (byte) 0x11);
+        script[0] = 0x21;
+        script[1] = prefix;
+        script[34] = (byte) 0xac;
+        return script;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SizeEstimatorTest {
+
+    @Test
+    public void matchesSignedTransaction() throws TxDecodeException
+    {
+        // Inputs that are already signed are counted as they are
+        Transaction tx = TxDecoder.decode(TestVectors.bytes(TestVectors.SEGWIT));
+        SizeEstimator estimate = SizeEstimator.estimate(tx);
+        assertEquals(tx.getSize(), estimate.getSize());
+        assertEquals(tx.getStrippedSize(), estimate.getStrippedSize());
+        assertEquals(tx.getVsize(), estimate.getVsize());
+
+        tx = TxDecoder.decode(TestVectors.bytes(TestVectors.GENESIS_COINBASE));
+        assertEquals(204, SizeEstimator.estimate(tx).getVsize());
+    }
+
+    @Test
+    public void estimatesP2wpkhSpend()
+    {
+        SizeEstimator estimate = new SizeEstimator().addInput(SizeEstimator.InputType.P2WPKH).addOutput(22);
+        assertEquals(82, estimate.getStrippedSize());
+        // Marker and flag, then one stack of a signature and a compressed key
+        assertEquals(82 + 2 + 1 + 73 + 34, estimate.getSize());
+        assertEquals(438, estimate.getWeight());
+        assertEquals(110, estimate.getVsize());
+    }
+
+    @Test
+    public void estimatesLegacySpends()
+    {
+        assertEquals(192, new SizeEstimator().addInput(SizeEstimator.InputType.P2PKH_COMPRESSED).addOutput(25).getVsize());
+        assertEquals(224, new SizeEstimator().addInput(SizeEstimator.InputType.P2PKH_UNCOMPRESSED).addOutput(25).getVsize());
+        assertEquals(158, new SizeEstimator().addInput(SizeEstimator.InputType.P2PK).addOutput(25).getVsize());
+
+        // OP_0, two signatures and a 2-of-3 redeem script of 105 bytes pushed with OP_PUSHDATA1
+        long scriptSig = 1 + 2 * 73 + 2 + 105;
+        assertEquals(10 + 32 + 4 + 3 + scriptSig + 4 + 34,
+                new SizeEstimator().addInput(SizeEstimator.InputType.P2SH_MULTISIG).addOutput(25).getVsize());
+    }
+
+    @Test
+    public void picksInputTypeFromSpentScript() throws TxDecodeException
+    {
+        Transaction genesis = TxDecoder.decode(TestVectors.bytes(TestVectors.GENESIS_COINBASE));
+        assertEquals(SizeEstimator.InputType.P2PK, SizeEstimator.inputType(genesis.getOutputs().get(0)));
+        Transaction segwit = TxDecoder.decode(TestVectors.bytes(TestVectors.SEGWIT));
+        assertEquals(SizeEstimator.InputType.P2PKH_COMPRESSED, SizeEstimator.inputType(segwit.getOutputs().get(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsImpossibleMultisig()
+    {
+        new SizeEstimator().addMultisigInput(3, 2);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+// Transactions with known hashes shared by the codec tests
+final class TestVectors {
+
+    // Coinbase of the mainnet genesis block, paying 50 BTC to the pubkey behind 1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa
+    static final String GENESIS_COINBASE =
+            "01000000010000000000000000000000000000000000000000000000000000000000000000ffffffff4d04ffff001d01"
+            + "04455468652054696d65732030332f4a616e2f32303039204368616e63656c6c6f72206f6e206272696e6b206f66"
+            + "207365636f6e64206261696c6f757420666f722062616e6b73ffffffff0100f2052a01000000434104678afdb0fe"
+            + "5548271967f1a67130b7105cd6a828e03909a67962e0ea1f61deb649f6bc3f4cef38c4f35504e51ec112de5c384d"
+            + "f7ba0b8d578a4c702b6bf11d5fac00000000";
+    static final String GENESIS_COINBASE_TXID = "4A5E1E4BAAB89F3A32518A88C31BC87F618F76673E2CC77AB2127B7AFDEDA33B";
+    static final String GENESIS_HASH160 = "62E907B15CBF27D5425399EBF6F0FB50EBB88F18";
+    static final String GENESIS_ADDRESS = "1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa";
+
+    // The signed native P2WPKH example of BIP 143: one P2PK input and one P2WPKH input, two P2PKH outputs
+    static final String SEGWIT =
+            "01000000000102fff7f7881a8099afa6940d42d1e7f6362bec38171ea3edf433541db4e4ad969f0000000049483045"
+            + "0221008b9d1dc26ba6a9cb62127b02742fa9d754cd3bebf337f7a55d114c8e5cdd30be022040529b194ba3f9281a"
+            + "99f2b1c0a19c0489bc22ede944ccf4ecbab4cc618ef3ed01eeffffffef51e1b804cc89d182d279655c3aa89e815b"
+            + "1b309fe287d9b2b55d57b90ec68a0100000000ffffffff02202cb206000000001976a9148280b37df378db99f66f"
+            + "85c95a783a76ac7a6d5988ac9093510d000000001976a9143bde42dbee7e4dbe6a21b2d50ce2f0167faa815988ac"
+            + "000247304402203609e17b84f6a7d30c80bfa610b5b4542f32a8a0d5447a12fb1366d7f01cc44a0220573a954c45"
+            + "18331561406f90300e8f3358f51928d43c212a8caed02de67eebee0121025476c2e83188368da1ff3e292e7acafc"
+            + "db3566bb0ad253f62fc70f07aeee635711000000";
+    static final String SEGWIT_TXID = "E8151A2AF31C368A35053DDD4BDB285A8595C769A3AD83E0FA02314A602D4609";
+    static final String SEGWIT_WTXID = "C36C38370907DF2324D9CE9D149D191192F338B37665A82E78E76A12C909B762";
+
+    private TestVectors()
+    {
+    }
+
+    static byte[] bytes(String hex)
+    {
+        return Hex.decode(hex);
+    }
+}
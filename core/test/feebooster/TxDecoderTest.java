@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.bitcoinj.params.MainNetParams;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TxDecoderTest {
+
+    @Test
+    public void decodesLegacyTransaction() throws TxDecodeException
+    {
+        Transaction tx = TxDecoder.decode(TestVectors.bytes(TestVectors.GENESIS_COINBASE));
+        assertEquals(TestVectors.GENESIS_COINBASE_TXID, tx.getHash());
+        assertEquals(TestVectors.GENESIS_COINBASE_TXID, tx.getWitnessHash());
+        assertEquals(1, tx.getVersion());
+        assertEquals(1, tx.getInputs().size());
+        assertEquals(0xffffffff, tx.getInputs().get(0).getVout());
+        assertEquals(1, tx.getOutputs().size());
+        assertEquals(5000000000L, tx.getOutAmt());
+        assertEquals(204, tx.getSize());
+        assertEquals(204, tx.getVsize());
+        assertFalse(tx.hasWitness());
+    }
+
+    @Test
+    public void decodesSegwitTransaction() throws TxDecodeException
+    {
+        byte[] raw = TestVectors.bytes(TestVectors.SEGWIT);
+        Transaction tx = TxDecoder.decode(raw);
+        assertEquals(TestVectors.SEGWIT_TXID, tx.getHash());
+        assertEquals(TestVectors.SEGWIT_WTXID, tx.getWitnessHash());
+        assertEquals(343, tx.getSize());
+        assertEquals(233, tx.getStrippedSize());
+        assertEquals(261, tx.getVsize());
+        assertTrue(tx.hasWitness());
+        assertFalse(tx.getInputs().get(0).hasWitness());
+        assertTrue(tx.getInputs().get(1).hasWitness());
+        assertEquals(112340000L + 223450000L, tx.getOutAmt());
+        assertEquals(17, tx.getLocktime());
+
+        // Same hashes as bitcoinj works out
+        org.bitcoinj.core.Transaction reference = new org.bitcoinj.core.Transaction(MainNetParams.get(), raw);
+        assertEquals(reference.getTxId().toString(), tx.getHash().toLowerCase());
+        assertEquals(reference.getWTxId().toString(), tx.getWitnessHash().toLowerCase());
+    }
+
+    @Test
+    public void decodesEveryVarIntWidth() throws TxDecodeException
+    {
+        // Script lengths at the edges of the 1, 3 and 5 byte encodings
+        assertEquals(0, outputScriptLength("00", 0));
+        assertEquals(0xfc, outputScriptLength("fc", 0xfc));
+        assertEquals(0xfd, outputScriptLength("fdfd00", 0xfd));
+        assertEquals(0xffff, outputScriptLength("fdffff", 0xffff));
+        assertEquals(0x10000, outputScriptLength("fe00000100", 0x10000));
+    }
+
+    @Test
+    public void reportsWhereTruncatedDataEnds()
+    {
+        byte[] raw = TestVectors.bytes(TestVectors.GENESIS_COINBASE);
+        for(int len = 0; len < raw.length; len++)
+        {
+            byte[] prefix = Arrays.copyOf(raw, len);
+            try {
+                TxDecoder.decode(prefix);
+                fail("Decoded " + len + " of " + raw.length + " bytes");
+            } catch (TxDecodeException e) {
+                assertTrue(e.isTruncated());
+                assertTrue(e.getPosition() <= len);
+            }
+        }
+    }
+
+    @Test
+    public void reportsPositionOfBadData()
+    {
+        // Version then the segwit marker with an unknown flag
+        assertDecodeError("0100000000020000000000", 5, false);
+
+        // Marker and flag set but no input has a witness
+        String noWitness = "010000000001" + "01" + zeros(32) + "00000000" + "00" + "ffffffff"
+                + "01" + "0000000000000000" + "00" + "00" + "00000000";
+        assertDecodeError(noWitness, 4, false);
+
+        // A 9 byte input count larger than any long
+        assertDecodeError("01000000" + "ffffffffffffffffff", 4, false);
+
+        // An input count that cannot fit in the largest transaction
+        assertDecodeError("01000000" + "feffffff00", 9, false);
+    }
+
+    @Test
+    public void measureMatchesDecode() throws TxDecodeException
+    {
+        byte[] raw = TestVectors.bytes(TestVectors.SEGWIT);
+        assertEquals(raw.length, TxDecoder.measure(ByteBuffer.wrap(raw)));
+        for(int len = 0; len < raw.length; len++)
+            assertEquals(-1, TxDecoder.measure(ByteBuffer.wrap(raw, 0, len)));
+    }
+
+    @Test
+    public void splitsStreamIntoTransactions() throws TxDecodeException
+    {
+        byte[] first = TestVectors.bytes(TestVectors.GENESIS_COINBASE);
+        byte[] second = TestVectors.bytes(TestVectors.SEGWIT);
+        byte[] stream = new byte[first.length + second.length];
+        System.arraycopy(first, 0, stream, 0, first.length);
+        System.arraycopy(second, 0, stream, first.length, second.length);
+
+        TxDecoder decoder = new TxDecoder();
+        StringBuilder txids = new StringBuilder();
+        for(int off = 0; off < stream.length; off += 50)
+        {
+            decoder.feed(stream, off, Math.min(50, stream.length - off));
+            Transaction tx;
+            while((tx = decoder.next()) != null)
+                txids.append(tx.getHash()).append(' ');
+        }
+        assertEquals(TestVectors.GENESIS_COINBASE_TXID + " " + TestVectors.SEGWIT_TXID + " ", txids.toString());
+        assertEquals(0, decoder.buffered());
+    }
+
+    private static void assertDecodeError(String hex, int position, boolean truncated)
+    {
+        try {
+            TxDecoder.decode(TestVectors.bytes(hex));
+            fail("Decoded " + hex);
+        } catch (TxDecodeException e) {
+            assertEquals(e.getMessage(), position, e.getPosition());
+            assertEquals(e.getMessage(), truncated, e.isTruncated());
+        }
+    }
+
+    // Decodes one input and one output whose script is scriptLength zero bytes, its length encoded as lengthHex
+    private static int outputScriptLength(String lengthHex, int scriptLength) throws TxDecodeException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(TestVectors.bytes("01000000" + "01" + zeros(32) + "00000000" + "00" + "ffffffff"
+                + "01" + "0700000000000000" + lengthHex));
+        out.writeBytes(new byte[scriptLength]);
+        out.writeBytes(new byte[4]);
+        Transaction tx = TxDecoder.decode(out.toByteArray());
+        assertEquals(7, tx.getOutAmt());
+        return tx.getOutputs().get(0).getScript().length;
+    }
+
+    private static String zeros(int bytes)
+    {
+        char[] hex = new char[bytes * 2];
+        Arrays.fill(hex, '0');
+        return new String(hex);
+    }
+}
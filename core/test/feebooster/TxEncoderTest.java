@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class TxEncoderTest {
+
+    // The unsigned transaction of the BIP 143 P2WPKH example, the signed one with its scripts and witnesses left out
+    private static final String SEGWIT_UNSIGNED =
+            "0100000002fff7f7881a8099afa6940d42d1e7f6362bec38171ea3edf433541db4e4ad969f0000000000eeffffffef51e1"
+            + "b804cc89d182d279655c3aa89e815b1b309fe287d9b2b55d57b90ec68a0100000000ffffffff02202cb20600000000"
+            + "1976a9148280b37df378db99f66f85c95a783a76ac7a6d5988ac9093510d000000001976a9143bde42dbee7e4dbe6a"
+            + "21b2d50ce2f0167faa815988ac11000000";
+
+    @Test
+    public void reencodesDecodedTransactions() throws TxDecodeException
+    {
+        for(String hex : new String[] {TestVectors.GENESIS_COINBASE, TestVectors.SEGWIT})
+        {
+            byte[] raw = TestVectors.bytes(hex);
+            Transaction tx = TxDecoder.decode(raw);
+            assertEquals(raw.length, Transaction.serializedSize(tx, false));
+            assertArrayEquals(raw, Transaction.serialize(tx, false));
+            assertArrayEquals(raw, toArray(new TxEncoder(16).encode(tx, false)));
+        }
+    }
+
+    @Test
+    public void unsignedLeavesOutScriptsAndWitnesses() throws TxDecodeException
+    {
+        Transaction tx = TxDecoder.decode(TestVectors.bytes(TestVectors.SEGWIT));
+        byte[] unsigned = Transaction.serialize(tx, true);
+        assertEquals(SEGWIT_UNSIGNED, Hex.encode(unsigned).toLowerCase());
+        assertFalse(TxDecoder.decode(unsigned).hasWitness());
+    }
+
+    @Test
+    public void encoderReusesAndGrowsItsBuffer() throws TxDecodeException
+    {
+        TxEncoder encoder = new TxEncoder(16);
+        Transaction segwit = TxDecoder.decode(TestVectors.bytes(TestVectors.SEGWIT));
+        Transaction legacy = TxDecoder.decode(TestVectors.bytes(TestVectors.GENESIS_COINBASE));
+        ByteBuffer first = encoder.encode(segwit, false);
+        assertEquals(343, first.remaining());
+        ByteBuffer second = encoder.encode(legacy, false);
+        assertSame(first, second);
+        assertArrayEquals(TestVectors.bytes(TestVectors.GENESIS_COINBASE), toArray(second));
+    }
+
+    @Test
+    public void refusesBufferThatIsTooSmall() throws TxDecodeException
+    {
+        Transaction tx = TxDecoder.decode(TestVectors.bytes(TestVectors.GENESIS_COINBASE));
+        ByteBuffer out = ByteBuffer.allocate(203);
+        try {
+            Transaction.serialize(tx, false, out);
+            fail("Wrote 204 bytes into 203");
+        } catch (BufferOverflowException e) {
+            assertEquals(0, out.position());
+        }
+    }
+
+    @Test
+    public void varIntsUseTheSmallestWidth()
+    {
+        assertVarInt(0, "00");
+        assertVarInt(0xfc, "fc");
+        assertVarInt(0xfd, "fdfd00");
+        assertVarInt(0xffff, "fdffff");
+        assertVarInt(0x10000, "fe00000100");
+        assertVarInt(0xffffffffL, "feffffffff");
+        assertVarInt(0x100000000L, "ff0000000001000000");
+        assertVarInt(Long.MAX_VALUE, "ffffffffffffffff7f");
+    }
+
+    private static void assertVarInt(long value, String hex)
+    {
+        byte[] encoded = Utils.toVarInt(value);
+        assertEquals(hex, Hex.encode(encoded).toLowerCase());
+        assertEquals(encoded.length, Utils.varIntSize(value));
+        assertEquals(encoded.length, Utils.varIntLen(encoded, 0));
+        assertEquals(value, Utils.parseVarInt(encoded, 0));
+    }
+
+    private static byte[] toArray(ByteBuffer buf)
+    {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 Andrew Chow
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package feebooster;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TxTableTest {
+
+    @Test
+    public void returnsTransactionsAsAdded() throws TxDecodeException
+    {
+        TxTable table = new TxTable();
+        for(String hex : new String[] {TestVectors.GENESIS_COINBASE, TestVectors.SEGWIT})
+        {
+            byte[] raw = TestVectors.bytes(hex);
+            Transaction tx = TxDecoder.decode(raw);
+            tx.setFee(1234);
+            int i = table.add(tx);
+
+            Transaction copy = table.get(i);
+            assertArrayEquals(raw, Transaction.serialize(copy, false));
+            assertEquals(tx.getHash(), copy.getHash());
+            assertEquals(tx.getWitnessHash(), copy.getWitnessHash());
+            assertEquals(tx.getVsize(), copy.getVsize());
+            assertEquals(tx.getOutAmt(), copy.getOutAmt());
+            assertEquals(1234, copy.getFee());
+
+            assertEquals(tx.getHash(), table.getTxid(i));
+            assertEquals(tx.getWitnessHash(), table.getWitnessTxid(i));
+            assertEquals(tx.getSize(), table.getSize(i));
+            assertEquals(tx.getVsize(), table.getVsize(i));
+            assertEquals(tx.getInputs().size(), table.inputCount(i));
+            assertEquals(tx.getOutputs().size(), table.outputCount(i));
+            for(int in = 0; in < tx.getInputs().size(); in++)
+            {
+                assertEquals(tx.getInputs().get(in).getTxid(), table.getPrevTxid(i, in));
+                assertEquals(tx.getInputs().get(in).getVout(), table.getVout(i, in));
+                assertEquals(tx.getInputs().get(in).getSequence(), table.getSequence(i, in));
+            }
+        }
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void findsTransactionsByTxid() throws TxDecodeException
+    {
+        TxTable table = new TxTable();
+        Transaction tx = TxDecoder.decode(TestVectors.bytes(TestVectors.SEGWIT));
+        int i = table.add(tx);
+        assertEquals(i, table.indexOf(TestVectors.SEGWIT_TXID));
+        assertEquals(i, table.indexOf(TestVectors.SEGWIT_TXID.toLowerCase()));
+        assertEquals(-1, table.indexOf(TestVectors.GENESIS_COINBASE_TXID));
+        assertEquals(-1, table.indexOf(TestVectors.SEGWIT_WTXID));
+        assertEquals(-1, table.indexOf("not hex"));
+        assertEquals(-1, table.indexOf("abcd"));
+
+        // Adding it again keeps the first copy
+        assertEquals(i, table.add(TxDecoder.decode(TestVectors.bytes(TestVectors.SEGWIT))));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void growsPastInitialCapacity() throws TxDecodeException
+    {
+        TxTable table = new TxTable();
+        List<byte[]> raws = new ArrayList<byte[]>();
+        for(int locktime = 0; locktime < 200; locktime++)
+        {
+            // Every locktime gives the segwit vector a different txid
+            byte[] raw = TestVectors.bytes(TestVectors.SEGWIT);
+            ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN).putInt(raw.length - 4, locktime);
+            raws.add(raw);
+            assertEquals(locktime, table.add(TxDecoder.decode(raw)));
+        }
+        table.trimToSize();
+        for(int i = 0; i < raws.size(); i++)
+        {
+            Transaction tx = TxDecoder.decode(raws.get(i));
+            assertEquals(i, table.indexOf(tx.getHash()));
+            assertEquals(i, table.getLocktime(i));
+            assertArrayEquals(raws.get(i), Transaction.serialize(table.get(i), false));
+        }
+    }
+
+    @Test
+    public void valuesInputsFromHeldParents() throws TxDecodeException
+    {
+        TxTable table = new TxTable();
+        Transaction parent = TxDecoder.decode(TestVectors.bytes(TestVectors.GENESIS_COINBASE));
+        Transaction child = TxDecoder.decode(Transaction.serialize(
+                Booster.cpfpChild(parent, 0, 10000, TestVectors.GENESIS_ADDRESS), false));
+
+        int c = table.add(child);
+        assertEquals(-1, table.inputValue(c));
+        table.add(parent);
+        assertEquals(5000000000L, table.inputValue(c));
+        assertEquals(5000000000L - 10000, table.getOutAmt(c));
+        assertEquals(5000000000L, table.getOutputValue(TestVectors.GENESIS_COINBASE_TXID, 0));
+        assertEquals(-1, table.getOutputValue(TestVectors.GENESIS_COINBASE_TXID, 1));
+
+        table.setFee(c, 10000);
+        assertEquals(10000, table.getFee(c));
+    }
+}
@@ -14,15 +14,29 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
+package feebooster.gui;
+
+import feebooster.BoostPipeline;
+import feebooster.Booster;
+import feebooster.CpfpFeeSolver;
+import feebooster.EditableTxView;
+import feebooster.FeeEstimate;
+import feebooster.FeeEstimateCache;
+import feebooster.Hex;
+import feebooster.SizeEstimator;
+import feebooster.Transaction;
+import feebooster.TxInput;
+import feebooster.TxOutput;
+import feebooster.Utils;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
@@ -30,12 +44,12 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
-import org.json.JSONObject;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class FeeBooster extends Application {
 
@@ -57,6 +71,9 @@ public class FeeBooster extends Application {
     @Override
     public void start(Stage primaryStage) throws Exception {
 
+        // Start fetching the fee estimate in the background
+        FeeEstimateCache.getShared();
+
         // Setup the stage
         stage = primaryStage;
         primaryStage.setTitle("Bitcoin Transaction Fee Booster");
@@ -93,6 +110,16 @@ public class FeeBooster extends Application {
         txHexTxt.setWrapText(true);
         grid.add(txHexTxt, 0, 5, 5, 1);
 
+        // Progress shown while the transaction is being looked up
+        HBox progressHbox = new HBox(10);
+        progressHbox.setAlignment(Pos.CENTER_LEFT);
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setPrefSize(20, 20);
+        Button stopBtn = new Button("Stop");
+        progressHbox.getChildren().addAll(progress, new Text("Looking up transaction..."), stopBtn);
+        progressHbox.setVisible(false);
+        grid.add(progressHbox, 0, 7);
+
         // Next Button
         Button nextBtn = new Button("Next");
         nextBtn.setOnAction(new EventHandler<ActionEvent>() {
@@ -101,59 +128,50 @@ public class FeeBooster extends Application {
 
                 // Create Transaction
                 Transaction tx = new Transaction();
+                String txText = txHexTxt.getText();
 
                 // Check if txid
-                boolean isTxid = txHexTxt.getText().length() == 64 && txHexTxt.getText().matches("[0-9A-Fa-f]+");
+                boolean isTxid = txText.length() == 64 && Hex.isHex(txText);
                 if (isTxid)
-                    tx.setHash(txHexTxt.getText());
-
-                // Determine which page to go to
-                if (Transaction.deserializeStr(txHexTxt.getText(), tx) || isTxid) {
-
-                    // Get the fee
-                    JSONObject apiResult = Utils.getFromAnAPI("https://api.blockcypher.com/v1/btc/main/txs/" + tx.getHash(), "GET");
-
-                    // Get the fee
-                    tx.setFee(apiResult.getInt("fees"));
-                    tx.setTotalAmtPre(tx.getFee() + tx.getOutAmt());
+                    tx.setHash(txText);
 
-                    // Get info if txid
-                    if (isTxid) {
-
-                    }
-
-                    Scene scene = null;
-                    if (rbfRadio.isSelected())
-                        if(sceneCursor == scenes.size() - 1 || !rbf)
-                        {
-                            scene = new Scene(rbfGrid(tx), 900, 500);
-                            if(!rbf) {
-                                scenes.clear();
-                                scenes.add(stage.getScene());
-                            }
-                            rbf = true;
-                        }
-                    if (cpfpRadio.isSelected())
-                        if(sceneCursor == scenes.size() - 1 || rbf)
-                        {
-                            scene = new Scene(cpfpGrid(tx), 900, 500);
-                            if(rbf){
-                                scenes.clear();
-                                scenes.add(stage.getScene());
-                            }
-                            rbf = false;
-                        }
-
-                    if(sceneCursor != scenes.size() - 1)
-                        scene = scenes.get(sceneCursor + 1);
-                    else
-                        scenes.add(scene);
-                    sceneCursor++;
-                    stage.setScene(scene);
-                } else {
+                if (!Transaction.deserializeStr(txText, tx) && !isTxid) {
                     Alert alert = new Alert(Alert.AlertType.ERROR, "Please enter a valid transaction");
                     alert.showAndWait();
+                    return;
                 }
+
+                // Go forward to the existing scene unless the boost type changed or there is none yet
+                boolean rbfSelected = rbfRadio.isSelected();
+                boolean atEnd = sceneCursor == scenes.size() - 1;
+                if (!atEnd && rbfSelected == rbf) {
+                    sceneCursor++;
+                    stage.setScene(scenes.get(sceneCursor));
+                    return;
+                }
+
+                // Look up the fee and the fee estimate without blocking the UI
+                nextBtn.setDisable(true);
+                progressHbox.setVisible(true);
+                CompletableFuture<BoostPipeline.Prepared> pending = BoostPipeline.prepare(tx);
+                stopBtn.setOnAction(new EventHandler<ActionEvent>() {
+                    @Override
+                    public void handle(ActionEvent event) {
+                        pending.cancel(true);
+                    }
+                });
+                pending.whenComplete((prepared, error) -> Platform.runLater(() -> {
+                    nextBtn.setDisable(false);
+                    progressHbox.setVisible(false);
+                    if (pending.isCancelled())
+                        return;
+                    if (error != null) {
+                        Alert alert = new Alert(Alert.AlertType.ERROR, "Could not look up the transaction. Please try again.");
+                        alert.showAndWait();
+                        return;
+                    }
+                    showBoostScene(prepared, rbfSelected);
+                }));
             }
         });
         HBox btnHbox = new HBox(10);
@@ -173,7 +191,26 @@ public class FeeBooster extends Application {
         primaryStage.show();
     }
 
-    private GridPane rbfGrid(Transaction tx) {
+    private void showBoostScene(BoostPipeline.Prepared prepared, boolean rbfSelected) {
+        Transaction tx = prepared.getTx();
+        Scene scene;
+        if (rbfSelected)
+            scene = new Scene(rbfGrid(tx, prepared.getFeeEstimate()), 900, 500);
+        else
+            scene = new Scene(cpfpGrid(tx, prepared.getFeeEstimate()), 900, 500);
+
+        // Switching boost type drops the scenes of the other type
+        if (rbfSelected != rbf) {
+            scenes.subList(1, scenes.size()).clear();
+            sceneCursor = 0;
+        }
+        rbf = rbfSelected;
+        scenes.add(scene);
+        sceneCursor++;
+        stage.setScene(scene);
+    }
+
+    private GridPane rbfGrid(Transaction tx, FeeEstimate feeEstimate) {
         // Setup grid
         GridPane grid = new GridPane();
         grid.setAlignment(Pos.CENTER);
@@ -200,11 +237,14 @@ public class FeeBooster extends Application {
         grid.add(outputHdrLbl, 1, outGridHeight);
         outGridHeight++;
         ToggleGroup outputGroup = new ToggleGroup();
+        TxOutput.deriveAddresses(tx);
+        Text[] outputTxts = new Text[tx.getOutputs().size()];
         for (int i = 0; i < tx.getOutputs().size(); i++) {
             // Add output to table
             TxOutput out = tx.getOutputs().get(i);
             Text outputTxt = new Text("Amount " + out.getValue() + " Satoshis\nAddress: " + out.getAddress());
             outputTxt.setUserData(i);
+            outputTxts[i] = outputTxt;
             grid.add(outputTxt, 1, outGridHeight);
 
             // Add radio button to table
@@ -220,15 +260,20 @@ public class FeeBooster extends Application {
         int gridheight = (inGridHeight < outGridHeight) ? outGridHeight : inGridHeight;
         gridheight++;
 
+        // Fee changes only patch the cached unsigned encoding, which the next scene shows
+        EditableTxView view = new EditableTxView(tx);
+        TextArea unsignedTxTxt = new TextArea(view.getHex());
+
         // Fee
         Text fee = new Text("Fee Paid: " + tx.getFee() + " Satoshis");
         grid.add(fee, 0, gridheight);
+        Text feeRateTxt = new Text(feeRateText(view));
+        grid.add(feeRateTxt, 0, gridheight + 1);
 
         // Recommended fee from bitcoinfees.21.co
-        JSONObject apiResult = Utils.getFromAnAPI("http://bitcoinfees.21.co/api/v1/fees/recommended", "GET");
-        int fastestFee = apiResult.getInt("fastestFee");
-        long recommendedFee = fastestFee * tx.getSize();
-        Text recFeeTxt = new Text("Recommended Fee: " + recommendedFee + " Satoshis");
+        long fastestFee = feeEstimate.getFastestFee();
+        long recommendedFee = Booster.recommendedRbfFee(tx, fastestFee);
+        Text recFeeTxt = new Text(recommendedFeeText(feeEstimate, recommendedFee));
         grid.add(recFeeTxt, 1, gridheight);
         gridheight += 2;
 
@@ -244,25 +289,25 @@ public class FeeBooster extends Application {
         feeSpin.valueProperty().addListener(new ChangeListener() {
             @Override
             public void changed(ObservableValue observable, Object oldValue, Object newValue) {
-                double oldVal = (double) oldValue;
-                double newVal = (double) newValue;
-                Double step = newVal - oldVal;
-                tx.setFee(tx.getFee() + step.longValue());
-                fee.setText("Fee Paid: " + tx.getFee() + " Satoshis");
+                // Step from the fee actually paid, so putting the spinner back below is a no-op
+                long step = ((Double) newValue).longValue() - view.getFee();
                 int output = (int) outputGroup.getSelectedToggle().getUserData();
                 TxOutput out = tx.getOutputs().get(output);
-                out.decreaseValueBy(step.longValue());
-                for (int i = 0; i < grid.getChildren().size(); i++) {
-                    Node child = grid.getChildren().get(i);
-                    if (grid.getRowIndex(child) == output + 1 && grid.getColumnIndex(child) == 1) {
-                        ((Text) child).setText("Amount " + out.getValue() + " Satoshis\nAddress: " + out.getAddress());
-                    }
+                long covered = Math.min(step, out.getValue());
+                if (covered != 0) {
+                    view.moveFee(output, covered);
+                    outputTxts[output].setText("Amount " + out.getValue() + " Satoshis\nAddress: " + out.getAddress());
+                    unsignedTxTxt.replaceText(view.valueHexStart(output), view.valueHexEnd(output), view.valueHex(output));
                 }
+                fee.setText("Fee Paid: " + tx.getFee() + " Satoshis");
+                feeRateTxt.setText(feeRateText(view));
+                if (covered != step)
+                    feeSpin.getValueFactory().setValue((double) view.getFee());
             }
         });
 
         // Set to recommended fee button
-        Button recFeeBtn = new Button("Set fee to recommended");
+        Button recFeeBtn = new Button(feeEstimate.isFallback() ? "Set fee to guess" : "Set fee to recommended");
         grid.add(recFeeBtn, 1, gridheight);
         gridheight++;
         recFeeBtn.setOnAction(new EventHandler<ActionEvent>() {
@@ -281,7 +326,7 @@ public class FeeBooster extends Application {
             @Override
             public void handle(ActionEvent event) {
                 if(sceneCursor == scenes.size() - 1) {
-                    Scene scene = new Scene(unsignedTxGrid(tx), 900, 500);
+                    Scene scene = new Scene(unsignedTxGrid(tx, unsignedTxTxt), 900, 500);
                     scenes.add(scene);
                     sceneCursor++;
                     stage.setScene(scene);
@@ -315,7 +360,20 @@ public class FeeBooster extends Application {
         return grid;
     }
 
-    private GridPane cpfpGrid(Transaction tx)
+    private String feeRateText(EditableTxView view)
+    {
+        return String.format("Fee Rate: %.1f Satoshis/vbyte", view.getFeeRate());
+    }
+
+    // The built in rates are only a guess, they are not passed off as a recommendation
+    private String recommendedFeeText(FeeEstimate feeEstimate, long recommendedFee)
+    {
+        if(feeEstimate.isFallback())
+            return "No fee estimate could be fetched.\nGuessed Fee: " + recommendedFee + " Satoshis";
+        return "Recommended Fee: " + recommendedFee + " Satoshis";
+    }
+
+    private GridPane cpfpGrid(Transaction tx, FeeEstimate feeEstimate)
     {
         // Setup Grid
         GridPane grid = new GridPane();
@@ -330,6 +388,7 @@ public class FeeBooster extends Application {
         grid.add(outputHdrLbl, 1, gridheight);
         gridheight++;
         ToggleGroup outputGroup = new ToggleGroup();
+        TxOutput.deriveAddresses(tx);
         for (int i = 0; i < tx.getOutputs().size(); i++) {
             // Add output to table
             TxOutput out = tx.getOutputs().get(i);
@@ -346,48 +405,60 @@ public class FeeBooster extends Application {
             gridheight++;
         }
 
+        // Recommended fee from bitcoinfees.21.co, enough to lift the parent and the child together
+        long fastestFee = feeEstimate.getFastestFee();
+        CpfpFeeSolver solver = Booster.packageSolver(Collections.singletonList(tx), fastestFee);
+        long childSize = childSize(tx);
+        long recommendedFee = solver.childFee(childSize);
+
         // Fee
-        Text fee = new Text("Fee to Pay: " + tx.getFee() + " Satoshis");
+        Text fee = new Text("Fee to Pay: " + recommendedFee + " Satoshis");
         grid.add(fee, 0, gridheight);
-
-        // Recommended fee from bitcoinfees.21.co
-        JSONObject apiResult = Utils.getFromAnAPI("http://bitcoinfees.21.co/api/v1/fees/recommended", "GET");
-        int fastestFee = apiResult.getInt("fastestFee");
-        long recommendedFee = fastestFee * tx.getSize() + fastestFee * 300;
-        Text recFeeTxt = new Text("Recommended Fee: " + recommendedFee + " Satoshis");
+        Text recFeeTxt = new Text(recommendedFeeText(feeEstimate, recommendedFee));
         grid.add(recFeeTxt, 1, gridheight);
+        gridheight++;
+
+        // Fee rate of the parent and child together
+        Text rateTxt = new Text(packageRateText(solver, childSize, recommendedFee));
+        grid.add(rateTxt, 0, gridheight, 2, 1);
         gridheight += 2;
 
         // Instructions
-        Text instructions = new Text("Choose an output to spend from. Set the total transaction fee below.");
+        Text instructions = new Text("Choose an output to spend from. Set the fee for the child transaction below.");
         grid.add(instructions, 0, gridheight, 3, 1);
         gridheight++;
 
-        // Fee spinner
-        Spinner feeSpin = new Spinner((double) tx.getFee(), (double) tx.getTotalAmt(), (double) tx.getFee());
+        // Fee spinner, the child cannot pay more than the output it spends
+        SpinnerValueFactory.DoubleSpinnerValueFactory feeFactory = new SpinnerValueFactory.DoubleSpinnerValueFactory(
+                0.0, (double) selectedOutputValue(tx, outputGroup), (double) recommendedFee);
+        Spinner<Double> feeSpin = new Spinner<Double>(feeFactory);
         feeSpin.setEditable(true);
         grid.add(feeSpin, 0, gridheight);
+        outputGroup.selectedToggleProperty().addListener(new ChangeListener<Toggle>() {
+            @Override
+            public void changed(ObservableValue<? extends Toggle> observable, Toggle oldValue, Toggle newValue) {
+                // Lowering the max pulls the fee down with it
+                if(newValue != null)
+                    feeFactory.setMax((double) selectedOutputValue(tx, outputGroup));
+            }
+        });
         feeSpin.valueProperty().addListener(new ChangeListener() {
             @Override
             public void changed(ObservableValue observable, Object oldValue, Object newValue) {
-                double oldVal = (double) oldValue;
-                double newVal = (double) newValue;
-                Double step = newVal - oldVal;
-                tx.setFee(tx.getFee() + step.longValue());
-                fee.setText("Fee to Pay: " + tx.getFee() + " Satoshis");
+                long childFee = ((Double) newValue).longValue();
+                fee.setText("Fee to Pay: " + childFee + " Satoshis");
+                rateTxt.setText(packageRateText(solver, childSize, childFee));
             }
         });
 
         // Set to recommended fee button
-        Button recFeeBtn = new Button("Set fee to recommended");
+        Button recFeeBtn = new Button(feeEstimate.isFallback() ? "Set fee to guess" : "Set fee to recommended");
         grid.add(recFeeBtn, 1, gridheight);
         gridheight++;
         recFeeBtn.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
-                long prevFee = tx.getFee();
-                long step = recommendedFee - prevFee;
-                feeSpin.increment((int)step);
+                feeSpin.getValueFactory().setValue((double) recommendedFee);
             }
         });
 
@@ -407,44 +478,17 @@ public class FeeBooster extends Application {
                 if(sceneCursor == scenes.size() - 1) {
                     // Referenced output
                     int output = (int) outputGroup.getSelectedToggle().getUserData();
-                    TxOutput refout = tx.getOutputs().get(output);
-
-                    // Create output for CPFP transaction
-                    TxOutput out = null;
-                    long outval = refout.getValue() - ((Double) feeSpin.getValue()).longValue();
-                    if (Utils.validateAddress(outAddr.getText())) {
-                        byte[] decodedAddr = Utils.base58Decode(outAddr.getText());
-                        boolean isP2SH = decodedAddr[0] == 0x00;
-                        byte[] hash160 = Arrays.copyOfRange(decodedAddr, 1, decodedAddr.length - 4);
-                        if (isP2SH) {
-                            byte[] script = new byte[hash160.length + 3];
-                            script[0] = (byte) 0xa9;
-                            script[1] = (byte) 0x14;
-                            System.arraycopy(hash160, 0, script, 2, hash160.length);
-                            script[script.length - 1] = (byte) 0x87;
-                            out = new TxOutput(outval, script);
-                        } else {
-                            byte[] script = new byte[hash160.length + 5];
-                            script[0] = (byte) 0x76;
-                            script[1] = (byte) 0xa9;
-                            script[2] = (byte) 0x14;
-                            System.arraycopy(hash160, 0, script, 3, hash160.length);
-                            script[script.length - 2] = (byte) 0x88;
-                            script[script.length - 1] = (byte) 0xac;
-                            out = new TxOutput(outval, script);
-                        }
-                    } else {
-                        Alert alert = new Alert(Alert.AlertType.ERROR, "Invalid Address");
+
+                    // Create CPFP Transaction
+                    Transaction cpfpTx;
+                    try {
+                        cpfpTx = Booster.cpfpChild(tx, output, ((Double) feeSpin.getValue()).longValue(), outAddr.getText());
+                    } catch (IllegalArgumentException e) {
+                        Alert alert = new Alert(Alert.AlertType.ERROR, e.getMessage());
                         alert.showAndWait();
                         return;
                     }
 
-                    // Create CPFP Transaction
-                    Transaction cpfpTx = new Transaction();
-                    TxInput in = new TxInput(tx.getHash(), output, new byte[]{(0x00)}, 0xffffffff);
-                    cpfpTx.addOutput(out);
-                    cpfpTx.addInput(in);
-
                     // Create Scene
                     Scene scene = new Scene(unsignedTxGrid(cpfpTx), 900, 500);
                     scenes.add(scene);
@@ -481,7 +525,36 @@ public class FeeBooster extends Application {
         return grid;
     }
 
+    // Virtual size of a signed child spending whichever output of tx is the most expensive to spend
+    private long selectedOutputValue(Transaction tx, ToggleGroup outputGroup)
+    {
+        int output = (int) outputGroup.getSelectedToggle().getUserData();
+        return tx.getOutputs().get(output).getValue();
+    }
+
+    private long childSize(Transaction tx)
+    {
+        long childSize = 0;
+        for (TxOutput out : tx.getOutputs()) {
+            SizeEstimator estimator = new SizeEstimator().addInput(SizeEstimator.inputType(out)).addOutput(25);
+            childSize = Math.max(childSize, estimator.getVsize());
+        }
+        return childSize;
+    }
+
+    private String packageRateText(CpfpFeeSolver solver, long childSize, long childFee)
+    {
+        return String.format("Package Fee Rate: %.1f Satoshis/vbyte (target %d)",
+                solver.effectiveRate(childSize, childFee), solver.getTargetRate());
+    }
+
     private GridPane unsignedTxGrid(Transaction tx)
+    {
+        return unsignedTxGrid(tx, new TextArea(Utils.bytesToHex(Transaction.serialize(tx, true))));
+    }
+
+    // The text area may be kept up to date by whoever made it
+    private GridPane unsignedTxGrid(Transaction tx, TextArea unsignedTxTxt)
     {
         // Setup Grid
         GridPane grid = new GridPane();
@@ -496,8 +569,6 @@ public class FeeBooster extends Application {
         grid.add(instructions, 0, 0);
 
         // Put unsigned transaction in text area
-        byte[] unsignedTxBytes = Transaction.serialize(tx, true);
-        TextArea unsignedTxTxt = new TextArea(Utils.bytesToHex(unsignedTxBytes));
         unsignedTxTxt.setWrapText(true);
         grid.add(unsignedTxTxt, 0, 1);
 
@@ -579,6 +650,9 @@ public class FeeBooster extends Application {
 
     private GridPane broadcastTxGrid(Transaction tx)
     {
+        // Start connecting to peers while the user signs
+        BoostPipeline.warmUp();
+
         // Setup Grid
         GridPane grid = new GridPane();
         grid.setAlignment(Pos.CENTER);
@@ -605,9 +679,33 @@ public class FeeBooster extends Application {
             @Override
             public void handle(ActionEvent event) {
                 Transaction signedTx = new Transaction();
-                Transaction.deserializeStr(signedTxTxt.getText(), signedTx);
-                txInfo.setText("Transaction being broadcast. TXID: " + signedTx.getHash() + "\nPlease wait a few minutes for best results, but you may now exit.");
-                Broadcaster.broadcastTransaction(Transaction.serialize(signedTx, false));
+                if (!Transaction.deserializeStr(signedTxTxt.getText(), signedTx)) {
+                    Alert alert = new Alert(Alert.AlertType.ERROR, "Please enter a valid signed transaction");
+                    alert.showAndWait();
+                    return;
+                }
+                String sending = "Transaction being broadcast. TXID: " + signedTx.getHash();
+                txInfo.setText(sending + "\nConnecting to peers...");
+                nextBtn.setDisable(true);
+
+                // Broadcast off the FX thread, then show how far the transaction has spread
+                // as peers request or announce it
+                BoostPipeline.broadcast(Transaction.serialize(signedTx, false)).whenComplete((tracker, error) -> Platform.runLater(() -> {
+                    nextBtn.setDisable(false);
+                    if (error != null) {
+                        txInfo.setText(sending + "\nBroadcast failed: " + error.getMessage());
+                        return;
+                    }
+                    txInfo.setText(sending + "\nWaiting for peers to pick it up...");
+                    tracker.addListener(new Runnable() {
+                        @Override
+                        public void run() {
+                            String status = tracker.isPropagated() ? "\nThe transaction has propagated, you may now exit."
+                                    : "\nPlease wait for it to propagate, but you may now exit.";
+                            txInfo.setText(sending + "\n" + tracker.summary() + status);
+                        }
+                    }, Platform::runLater);
+                }));
             }
         });
         HBox btnHbox = new HBox(10);